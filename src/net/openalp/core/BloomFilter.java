@@ -0,0 +1,160 @@
+package net.openalp.core;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * A Bloom filter over words. It can tell for certain that a word is not in the set,
+ * which lets the lexicon turn away misspellings and unknown names without asking
+ * the database. A word that might be in the set still has to be looked up.
+ *
+ * Words can be added but never removed, so the filter must be rebuilt when words
+ * leave the lexicon. Adding is not thread safe, but lookups may run alongside it.
+ */
+public class BloomFilter {
+    private final long[] bits;
+    private final int bitCount;
+    private final int hashCount;
+    private final int capacity;
+    private int words;
+
+    // Statistics, updated without locking so they are only approximate under load.
+    private long rejected;
+    private long falsePositives;
+
+    /**
+     * Class constructor.
+     * @param capacity The number of words the filter is sized for.
+     * @param falsePositiveRate The rate of false positives wanted once capacity words have been added.
+     */
+    public BloomFilter(int capacity, double falsePositiveRate) {
+        this.capacity = Math.max(capacity, 1);
+
+        double ln2 = Math.log(2);
+        long optimalBits = (long)Math.ceil(-this.capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+        bitCount = (int)Math.max(64, Math.min(optimalBits, Integer.MAX_VALUE - 63));
+        hashCount = Math.max(1, (int)Math.round(bitCount / (double)this.capacity * ln2));
+        bits = new long[(bitCount + 63) / 64];
+    }
+
+    public void add(CharSequence word) {
+        long hash = hash(word, 0, word.length());
+        int h1 = (int)hash;
+        int h2 = (int)(hash >>> 32);
+
+        for(int i = 0; i < hashCount; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+
+        words++;
+    }
+
+    /**
+     * Tests if a word might be in the set.
+     * @param text The text holding the word.
+     * @param start The index of the first character of the word.
+     * @param end The index after the last character of the word.
+     * @return false if the word is definitely not in the set.
+     */
+    public boolean mightContain(CharSequence text, int start, int end) {
+        long hash = hash(text, start, end);
+        int h1 = (int)hash;
+        int h2 = (int)(hash >>> 32);
+
+        for(int i = 0; i < hashCount; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            if((bits[bit >>> 6] & (1L << bit)) == 0) {
+                rejected++;
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public boolean mightContain(CharSequence word) {
+        return mightContain(word, 0, word.length());
+    }
+
+    /**
+     * Carries the statistics of a filter over to the filter that replaces it.
+     * @param previous The filter being replaced.
+     */
+    public void inheritStatistics(BloomFilter previous) {
+        rejected += previous.rejected;
+        falsePositives += previous.falsePositives;
+    }
+
+    /**
+     * Records that a word passed the filter but was not in the set after all.
+     */
+    public void recordFalsePositive() {
+        falsePositives++;
+    }
+
+    // 64 bit FNV-1a, split into two 32 bit hashes for double hashing.
+    private static long hash(CharSequence text, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+
+        for(int i = start; i < end; i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
+    /**
+     * @return The number of words the filter was sized for, adding more raises the false positive rate.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return words;
+    }
+
+    /**
+     * @return The false positive rate expected from the number of words added so far.
+     */
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-hashCount * (double)words / bitCount), hashCount);
+    }
+
+    /**
+     * @return The fraction of unknown words that got through the filter, as recorded by recordFalsePositive.
+     */
+    public double getObservedFalsePositiveRate() {
+        long unknown = rejected + falsePositives;
+        return unknown == 0 ? 0.0 : falsePositives / (double)unknown;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getFalsePositives() {
+        return falsePositives;
+    }
+
+    public String toString() {
+        return "Lexicon filter: " + words + " words in " + bitCount + " bits with " + hashCount + " hashes, "
+                + rejected + " unknown words rejected, " + falsePositives + " false positives ("
+                + String.format("%.3f%% expected, %.3f%% observed", getExpectedFalsePositiveRate() * 100, getObservedFalsePositiveRate() * 100) + ")";
+    }
+}
@@ -58,7 +58,8 @@ public class Chain extends LinkedList<Node> {
             }
 
             if(!diverge) {
-                merge = fork.findMatchingNode(token, true);
+                // Usually nothing after the fork matches, the graph can tell us that without a search.
+                merge = grammar.getGraph().findMatchingNode(fork, token);
             }
 
             if(merge != null) {
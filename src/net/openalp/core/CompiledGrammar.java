@@ -0,0 +1,378 @@
+package net.openalp.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import net.openalp.graph.Node;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * A frozen copy of a grammar that sentences can be validated against without touching
+ * the live graph. Every node reachable from start becomes an int state, and every
+ * (state, token signature) pair maps to the states it can step to, along with the
+ * strength of the edge taken. Strengths are worked out once, when the grammar is
+ * compiled.
+ *
+ * Validation follows the same breadth first search as Node.getMatchedPath, so a
+ * sentence gets exactly the validity Grammar.validateSentence would give it. Each thread
+ * keeps its own scratch arrays, so validating allocates nothing once they have grown.
+ *
+ * Instances are immutable and safe to share between threads. The grammar compiles a new
+ * one whenever it has been trained since the last.
+ *
+ * @see Grammar#compile()
+ */
+public final class CompiledGrammar {
+    private static final ThreadLocal<Scratch> scratches = new ThreadLocal<Scratch>() {
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private final int version;
+    private final int stateCount;
+    private final boolean[] terminal;
+
+    // Open addressing from (state << 32 | signature) to a group of transitions.
+    private final long[] keys;
+    private final int[] groups;
+    private final int mask;
+
+    // Group g holds the transitions from groupStart[g] up to groupStart[g + 1].
+    private final int[] groupStart;
+    private final int[] targets;
+    private final float[] strengths;
+
+    /**
+     * Compiles every node that can be reached from start. The graph must not change while
+     * this runs, Grammar holds the lock on its nodes.
+     * @param start The node every sentence starts from.
+     * @param version The version of the grammar being compiled.
+     */
+    CompiledGrammar(Node start, int version) {
+        this.version = version;
+
+        // Number the states in the order the search would find them.
+        Map<Node, Integer> states = new IdentityHashMap<Node, Integer>();
+        List<Node> nodes = new ArrayList<Node>();
+        states.put(start, 0);
+        nodes.add(start);
+
+        for(int i = 0; i < nodes.size(); i++) {
+            for(Node successor: nodes.get(i).getSuccessors()) {
+                if(!states.containsKey(successor)) {
+                    states.put(successor, nodes.size());
+                    nodes.add(successor);
+                }
+            }
+        }
+
+        stateCount = nodes.size();
+        terminal = new boolean[stateCount];
+
+        List<Long> groupKeys = new ArrayList<Long>();
+        int[] starts = new int[16];
+        int[] targetList = new int[16];
+        float[] strengthList = new float[16];
+        int transitions = 0;
+
+        for(int state = 0; state < stateCount; state++) {
+            Node node = nodes.get(state);
+            terminal[state] = node.isTerminal();
+
+            // Successors sharing a signature stay in edge order, as they are in the node's own index.
+            Map<Integer, List<Node>> bySignature = new LinkedHashMap<Integer, List<Node>>();
+            for(Node successor: node.getSuccessors()) {
+                List<Node> group = bySignature.get(successor.getMatchKey());
+                if(group == null) {
+                    group = new ArrayList<Node>();
+                    bySignature.put(successor.getMatchKey(), group);
+                }
+                group.add(successor);
+            }
+
+            for(Map.Entry<Integer, List<Node>> entry: bySignature.entrySet()) {
+                if(groupKeys.size() + 1 >= starts.length) {
+                    starts = grow(starts, starts.length * 2);
+                }
+                starts[groupKeys.size()] = transitions;
+                groupKeys.add(key(state, entry.getKey()));
+
+                for(Node successor: entry.getValue()) {
+                    if(transitions == targetList.length) {
+                        targetList = grow(targetList, transitions * 2);
+                        strengthList = grow(strengthList, transitions * 2);
+                    }
+                    targetList[transitions] = states.get(successor);
+                    strengthList[transitions] = ((GrammarEdge)successor.getEdgeTo(node)).getStrength();
+                    transitions++;
+                }
+            }
+        }
+
+        int groupCount = groupKeys.size();
+        starts[groupCount] = transitions;
+        groupStart = starts;
+        targets = targetList;
+        strengths = strengthList;
+
+        int capacity = 2;
+        while(capacity < groupCount * 2) {
+            capacity <<= 1;
+        }
+        mask = capacity - 1;
+        keys = new long[capacity];
+        groups = new int[capacity];
+        Arrays.fill(groups, -1);
+
+        for(int g = 0; g < groupCount; g++) {
+            long key = groupKeys.get(g);
+            int slot = hash(key) & mask;
+            while(groups[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            groups[slot] = g;
+        }
+    }
+
+    /**
+     * Getter
+     * @return The version of the grammar this was compiled from.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Getter
+     * @return The number of nodes that can be reached from start.
+     */
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * Calculates the validity of a sentence.
+     * @param sentence The tokens of the sentence.
+     * @return The product of the strengths along the best path, or 0 if it does not reach the end of a sentence.
+     */
+    public float validate(Sentence sentence) {
+        Scratch scratch = scratches.get();
+        int steps = sentence.size();
+        scratch.fitSteps(steps, steps);
+
+        int i = 0;
+        for(Token token: sentence) {
+            scratch.keys[i] = token.getSignature();
+            scratch.keyStart[i] = i;
+            i++;
+        }
+        scratch.keyStart[steps] = steps;
+
+        return search(scratch, steps);
+    }
+
+    /**
+     * Calculates the validity of the best reading of a sentence.
+     * @param lattice Every reading of the sentence.
+     * @return The product of the strengths along the best path, or 0 if it does not reach the end of a sentence.
+     */
+    public float validate(TokenLattice lattice) {
+        Scratch scratch = scratches.get();
+        int steps = lattice.size();
+        int count = 0;
+        for(int position = 0; position < steps; position++) {
+            count += lattice.getCandidates(position).length;
+        }
+        scratch.fitSteps(steps, count);
+
+        int k = 0;
+        for(int position = 0; position < steps; position++) {
+            scratch.keyStart[position] = k;
+            for(Token candidate: lattice.getCandidates(position)) {
+                scratch.keys[k++] = candidate.getSignature();
+            }
+        }
+        scratch.keyStart[steps] = k;
+
+        return search(scratch, steps);
+    }
+
+    // The same search as Node.getMatchedPath, over states instead of nodes.
+    private float search(Scratch scratch, int steps) {
+        scratch.fitStates(stateCount);
+        scratch.size = 0;
+        int seen = scratch.nextMark();
+
+        int longest = scratch.add(0, -1, 0, 1.0f);
+        if(steps == 0) {
+            return score(scratch, longest);
+        }
+
+        int level = 0;
+        for(int head = 0; head < scratch.size; head++) {
+            int state = scratch.states[head];
+            int depth = scratch.depths[head];
+
+            if(depth != level) {
+                seen = scratch.nextMark();
+                level = depth;
+            }
+
+            for(int k = scratch.keyStart[depth]; k < scratch.keyStart[depth + 1]; k++) {
+                int group = find(key(state, scratch.keys[k]));
+                if(group < 0) {
+                    continue;
+                }
+
+                for(int t = groupStart[group]; t < groupStart[group + 1]; t++) {
+                    int target = targets[t];
+                    if(scratch.marks[target] == seen) {
+                        continue;
+                    }
+                    scratch.marks[target] = seen;
+
+                    int entry = scratch.add(target, head, depth + 1, strengths[t]);
+                    if(depth + 1 == steps) {
+                        return score(scratch, entry);
+                    }
+                    if(scratch.depths[longest] <= depth) {
+                        longest = entry;
+                    }
+                }
+            }
+        }
+
+        // Not even the first token matched.
+        if(longest == 0) {
+            return 0;
+        }
+
+        return score(scratch, longest);
+    }
+
+    // Multiplies the strengths from start to the entry, in the same order as Grammar does.
+    private float score(Scratch scratch, int entry) {
+        if(!terminal[scratch.states[entry]]) {
+            return 0;
+        }
+
+        int length = 0;
+        for(int i = entry; i >= 0; i = scratch.parents[i]) {
+            scratch.path[length++] = i;
+        }
+
+        float validity = 1;
+        for(int i = length - 2; i >= 0; i--) {
+            validity *= scratch.strengths[scratch.path[i]];
+        }
+
+        return validity;
+    }
+
+    private int find(long key) {
+        for(int slot = hash(key) & mask; groups[slot] >= 0; slot = (slot + 1) & mask) {
+            if(keys[slot] == key) {
+                return groups[slot];
+            }
+        }
+        return -1;
+    }
+
+    private static long key(int state, int signature) {
+        return ((long)state << 32) | (signature & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+    private static int[] grow(int[] array, int length) {
+        int[] grown = new int[length];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static float[] grow(float[] array, int length) {
+        float[] grown = new float[length];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    // The working memory of a search, reused by every validation on a thread.
+    private static class Scratch {
+        private int[] states = new int[64];
+        private int[] parents = new int[64];
+        private int[] depths = new int[64];
+        private float[] strengths = new float[64];
+        private int[] path = new int[64];
+        private int size;
+
+        private int[] marks = new int[64];
+        private int mark;
+
+        private int[] keys = new int[16];
+        private int[] keyStart = new int[17];
+
+        public int add(int state, int parent, int depth, float strength) {
+            if(size == states.length) {
+                states = grow(states, size * 2);
+                parents = grow(parents, size * 2);
+                depths = grow(depths, size * 2);
+                strengths = grow(strengths, size * 2);
+                path = grow(path, size * 2);
+            }
+
+            states[size] = state;
+            parents[size] = parent;
+            depths[size] = depth;
+            strengths[size] = strength;
+            return size++;
+        }
+
+        public int nextMark() {
+            if(++mark == 0) {
+                // Wrapped around, old marks could look current again.
+                Arrays.fill(marks, 0);
+                mark = 1;
+            }
+            return mark;
+        }
+
+        public void fitStates(int count) {
+            if(marks.length < count) {
+                marks = new int[Math.max(count, marks.length * 2)];
+                mark = 0;
+            }
+        }
+
+        public void fitSteps(int steps, int keyCount) {
+            if(keyStart.length < steps + 1) {
+                keyStart = new int[Math.max(steps + 1, keyStart.length * 2)];
+            }
+            if(keys.length < keyCount) {
+                keys = new int[Math.max(keyCount, keys.length * 2)];
+            }
+        }
+    }
+}
@@ -24,9 +24,12 @@
 
 package net.openalp.core;
 
+import java.io.Reader;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
 import net.openalp.graph.Edge;
 import net.openalp.graph.Graph;
 import net.openalp.graph.Node;
@@ -40,7 +43,10 @@ public class Grammar {
 	private Graph graph;
     private Tokenizer tokenizer;
 	private int totalSentences;
-    private LexiconDAO lexicon;
+    private Lexicon lexicon;
+    // Bumped whenever the graph is trained, so readers know their compiled copy is stale.
+    private final AtomicInteger version = new AtomicInteger();
+    private volatile CompiledGrammar compiled;
 
 
     public Grammar() { };
@@ -49,7 +55,7 @@ public class Grammar {
      * Constructor
      * @param lexicon The lexicon that will form the source of all words used in the grammar.
      */
-	public Grammar(LexiconDAO lexicon) {
+	public Grammar(Lexicon lexicon) {
 		graph = new Graph();
         tokenizer = new Tokenizer(this.lexicon = lexicon);
         clear();
@@ -63,8 +69,33 @@ public class Grammar {
 		start = new GrammarNode(new Token("START", "START", false, false, false, false, false, false));
 		graph.addNode(start);
 		totalSentences = 0;
+        version.incrementAndGet();
 	}
 
+    /**
+     * Freezes the grammar into an automaton that validates sentences without touching the
+     * graph. The automaton is only rebuilt when the grammar has been trained since it was
+     * last compiled, and is published to every thread at once.
+     * @return The automaton for the grammar as it is now.
+     */
+    public CompiledGrammar compile() {
+        CompiledGrammar automaton = compiled;
+        if(automaton != null && automaton.getVersion() == version.get()) {
+            return automaton;
+        }
+
+        // Training holds the same lock, so we compile a graph that is not changing.
+        synchronized(graph.getNodes()) {
+            automaton = compiled;
+            if(automaton == null || automaton.getVersion() != version.get()) {
+                automaton = new CompiledGrammar(start, version.get());
+                compiled = automaton;
+            }
+        }
+
+        return automaton;
+    }
+
     /**
      * Getter
      * @return Returns the special 'start' token. All sentances start here.
@@ -93,7 +124,7 @@ public class Grammar {
      * Getter
      * @return The Lexicon being used.
      */
-    public LexiconDAO getLexicon() {
+    public Lexicon getLexicon() {
         return lexicon;
     }
 
@@ -103,10 +134,12 @@ public class Grammar {
 
     public void setStart(Node start) {
         this.start = start;
+        version.incrementAndGet();
     }
 
     public void setGraph(Graph graph) {
         this.graph = graph;
+        version.incrementAndGet();
     }
 
     public void setTokenizer(Tokenizer tokenizer) {
@@ -115,10 +148,18 @@ public class Grammar {
 
     public void setTotalSentences(int totalSentences) {
         this.totalSentences = totalSentences;
+        version.incrementAndGet();
     }
 
-    public void setLexicon(LexiconDAO lexicon) {
+    /**
+     * Changes where words are looked up, the tokenizer included.
+     * @param lexicon The new lexicon.
+     */
+    public void setLexicon(Lexicon lexicon) {
         this.lexicon = lexicon;
+        if(tokenizer != null) {
+            tokenizer.setLexicon(lexicon);
+        }
     }
 
     /**
@@ -130,7 +171,20 @@ public class Grammar {
         // TODO: Ask Dimitry about this, dosent seem right to need to create a new list just so
         //Java knows that all elements implement a given interface.
         List<NodeFilter> filterList = new LinkedList<NodeFilter>(sentance);
-        List<Node> path = start.getMatchedPath(filterList);
+        return validatePath(start.getMatchedPath(filterList));
+	}
+
+    /**
+     * Checks if any reading of a sentance has a valid path from start. The grammar is walked
+     * once with every reading at the same time, however ambiguous the sentance is.
+     * @param lattice Every reading of the sentance.
+     * @return the 'validity' of the best reading.
+     */
+	public ParseResult validateSentence(TokenLattice lattice) {
+        return validatePath(start.getMatchedPath(lattice.getFilters()));
+	}
+
+	private ParseResult validatePath(List<Node> path) {
         ParseResult result = new ParseResult();
 
         // First check the path actually made it to the end...
@@ -166,7 +220,8 @@ public class Grammar {
     public List<ParseResult> validate(String text) {
         List<ParseResult> result = new Vector<ParseResult>();
 
-        List<TokenizedSentence> tokenizingResult = tokenizer.tokenize(text.toLowerCase());
+        // The tokenizer folds case as it looks words up, so the text is not copied.
+        List<TokenizedSentence> tokenizingResult = tokenizer.tokenize(text);
 
         for(TokenizedSentence sentence: tokenizingResult) {
             ParseResult parseResult = calculateSentenceValidity(sentence);
@@ -181,23 +236,59 @@ public class Grammar {
         return result;
     }
 
+    /**
+     * Validates a stream of text one sentence at a time, reading only as much as it needs.
+     * Positions in each result count from getTokenizingResult().getOffset().
+     * @param source  The text to validate, closed once it has all been read.
+     * @return  A parse result for every sentance, calculated as it is asked for.
+     */
+    public Iterator<ParseResult> validate(Reader source) {
+        final Iterator<TokenizedSentence> sentences = tokenizer.iterate(source);
+
+        return new Iterator<ParseResult>() {
+            public boolean hasNext() {
+                return sentences.hasNext();
+            }
+
+            public ParseResult next() {
+                TokenizedSentence sentence = sentences.next();
+                ParseResult parseResult = calculateSentenceValidity(sentence);
+                parseResult.setStart(sentence.getStart());
+                parseResult.setEnd(sentence.getEnd());
+                return parseResult;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
     /**
      * Calculates the validity of a sentance.
      * @param inputSentence The sentance to validate
      * @return the validity of the sentance.
      */
 	public ParseResult calculateSentenceValidity(String inputSentence) {
-		TokenizedSentence tokenizingResult = tokenizer.tokenize(inputSentence.toLowerCase()).get(0);
+		TokenizedSentence tokenizingResult = tokenizer.tokenize(inputSentence).get(0);
         return calculateSentenceValidity(tokenizingResult);
 	}
 
     public ParseResult calculateSentenceValidity(TokenizedSentence tokenizedSentence) {
         ParseResult best = new ParseResult(Float.NEGATIVE_INFINITY);
+        // Readers only ever see the compiled grammar, never the graph being trained.
+        CompiledGrammar automaton = compile();
+
+        if(tokenizedSentence.getLattice() != null) {
+            best = new ParseResult(automaton.validate(tokenizedSentence.getLattice()));
+            best.setTokenizingResult(tokenizedSentence);
+            return best;
+        }
 
         for(Sentence sentance: tokenizedSentence.getSentences()) {
-            ParseResult result = validateSentence(sentance);
-            if(result.getValidity() > best.getValidity()) {
-                best = result;
+            float validity = automaton.validate(sentance);
+            if(validity > best.getValidity()) {
+                best = new ParseResult(validity);
             }
         }
 
@@ -213,9 +304,42 @@ public class Grammar {
      */
 
 	public boolean parse(String sentance) {
-        List<TokenizedSentence> foo = tokenizer.tokenize(sentance.toLowerCase());
+        List<TokenizedSentence> foo = tokenizer.tokenize(sentance);
         //if(foo.isEmpty()) return false;
-		TokenizedSentence tokenizingResult = foo.get(0);
+		return parse(foo.get(0));
+	}
+
+    /**
+     * Parses every sentance in a stream of text, reading only as much as it needs.
+     * @param source  The text to parse, closed once it has all been read.
+     * @return The number of sentances parsed.
+     */
+    public int parse(Reader source) {
+        int parsed = 0;
+
+        Iterator<TokenizedSentence> sentences = tokenizer.iterate(source);
+        while(sentences.hasNext()) {
+            parse(sentences.next());
+            parsed++;
+        }
+
+        return parsed;
+    }
+
+    /**
+     * Parses a tokenized sentance, adding it to the grammar if it does not exist.
+     * @param tokenizingResult  The sentance to parse.
+     * @return true if the sentance is already valid, false if new paths were created.
+     */
+    public boolean parse(TokenizedSentence tokenizingResult) {
+        TokenLattice lattice = tokenizingResult.getLattice();
+        if(lattice != null) {
+            // Follow whichever reading the grammar already knows best, and add that reading.
+            List<Node> path = start.getMatchedPath(lattice.getFilters());
+            boolean valid = validatePath(path).isValid();
+            addPath(lattice.resolve(path));
+            return valid;
+        }
 
         // Check if there are any valid sentances that match this structure.
         boolean exists = false;
@@ -254,6 +378,7 @@ public class Grammar {
     public void addPath(Sentence tokens) {
         synchronized(graph.getNodes()) {
             totalSentences++;
+            version.incrementAndGet();
             Node pathStart = start;
             Node fork;
             Node lastNode = null;
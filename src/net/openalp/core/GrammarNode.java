@@ -31,8 +31,8 @@ import java.awt.geom.Rectangle2D;
 
 public class GrammarNode extends Node {
 	private String type;
-	private boolean firstPerson, secondPerson, thirdPerson;
-	private boolean pastTense, presentTense, futureTense;
+	private int flags;
+	private int signature = Token.signature(null, 0);
 	private static int bubbleSize = 15;
 
 	//----------------------------------------
@@ -42,12 +42,8 @@ public class GrammarNode extends Node {
 
 	public GrammarNode(Token t) {
 		type = t.getType();
-		firstPerson = t.isFirstPerson();
-		secondPerson = t.isSecondPerson();
-		thirdPerson = t.isThirdPerson();
-		pastTense = t.isPastTense();
-		presentTense = t.isPresentTense();
-		futureTense = t.isFutureTense();
+		flags = t.getFlags();
+		signature = t.getSignature();
 	}
 
 	//----------------------------------------
@@ -70,28 +66,42 @@ public class GrammarNode extends Node {
 		return type;
 	}
 
+    /**
+     * @return The part of speech and flags packed into an int, the same as the signature of any token this node matches.
+     */
+    public int getSignature() {
+        return signature;
+    }
+
+    /**
+     * Nodes are keyed by their signature, so the successors matching a token are found in one probe.
+     */
+    public int getMatchKey() {
+        return signature;
+    }
+
     public boolean isFirstPerson() {
-        return firstPerson;
+        return (flags & Token.FIRST_PERSON) != 0;
     }
 
     public boolean isSecondPerson() {
-        return secondPerson;
+        return (flags & Token.SECOND_PERSON) != 0;
     }
 
     public boolean isThirdPerson() {
-        return thirdPerson;
+        return (flags & Token.THIRD_PERSON) != 0;
     }
 
     public boolean isPastTense() {
-        return pastTense;
+        return (flags & Token.PAST_TENSE) != 0;
     }
 
     public boolean isPresentTense() {
-        return presentTense;
+        return (flags & Token.PRESENT_TENSE) != 0;
     }
 
     public boolean isFutureTense() {
-        return futureTense;
+        return (flags & Token.FUTURE_TENSE) != 0;
     }
 
     public String toString() {
@@ -103,27 +113,38 @@ public class GrammarNode extends Node {
 	//----------------------------------------
 
     public void setFirstPerson(boolean firstPerson) {
-        this.firstPerson = firstPerson;
+        setFlag(Token.FIRST_PERSON, firstPerson);
     }
 
     public void setSecondPerson(boolean secondPerson) {
-        this.secondPerson = secondPerson;
+        setFlag(Token.SECOND_PERSON, secondPerson);
     }
 
     public void setThirdPerson(boolean thirdPerson) {
-        this.thirdPerson = thirdPerson;
+        setFlag(Token.THIRD_PERSON, thirdPerson);
     }
 
     public void setPastTense(boolean pastTense) {
-        this.pastTense = pastTense;
+        setFlag(Token.PAST_TENSE, pastTense);
     }
 
     public void setPresentTense(boolean presentTense) {
-        this.presentTense = presentTense;
+        setFlag(Token.PRESENT_TENSE, presentTense);
     }
 
     public void setFutureTense(boolean futureTense) {
-        this.futureTense = futureTense;
+        setFlag(Token.FUTURE_TENSE, futureTense);
+    }
+
+    private void setFlag(int flag, boolean set) {
+        flags = set ? flags | flag : flags & ~flag;
+        updateSignature();
+    }
+
+    // Our neighbours have us filed under our old signature.
+    private void updateSignature() {
+        signature = Token.signature(type, flags);
+        matchKeyChanged();
     }
     //----------------------------------------
 	// Non mutating logic
@@ -152,12 +173,12 @@ public class GrammarNode extends Node {
 
 	public void setType(String type) {
 		this.type = type;
+		updateSignature();
 	}
 
-	// Returns if token is of the same type and for any flag set in the node it must be set in the token.
+	// Returns if token is of the same type and has exactly the same flags.
 	public boolean matches(Token token) {
-		return token.getType().equals(type) && !(firstPerson != token.isFirstPerson()) && !(secondPerson != token.isSecondPerson())&& !(thirdPerson != token.isThirdPerson()) &&
-				                                 !(pastTense != token.isPastTense()) && !(presentTense != token.isPresentTense())&& !(futureTense != token.isFutureTense());
+		return token.getSignature() == signature;
 	}
 
 	public void drawBubble(Graphics g, int centerX, int centerY, Color color, int angle, String label) {
@@ -193,13 +214,13 @@ public class GrammarNode extends Node {
 
 		g.drawString(getLabel(), x - w / 2, y + h / 2 - 2);
 
-		if(firstPerson) drawBubble(g, x, y, Color.YELLOW, 150, "1st");
-		if(secondPerson) drawBubble(g, x, y, Color.YELLOW, 90, "2nd");
-		if(thirdPerson) drawBubble(g, x, y, Color.YELLOW, 30, "3rd");
+		if(isFirstPerson()) drawBubble(g, x, y, Color.YELLOW, 150, "1st");
+		if(isSecondPerson()) drawBubble(g, x, y, Color.YELLOW, 90, "2nd");
+		if(isThirdPerson()) drawBubble(g, x, y, Color.YELLOW, 30, "3rd");
 
-		if(pastTense) drawBubble(g, x, y, Color.YELLOW, 210, "<-");
-		if(presentTense) drawBubble(g, x, y, Color.YELLOW, 270, " \\/");
-		if(futureTense) drawBubble(g, x, y, Color.YELLOW, 330, "->");
+		if(isPastTense()) drawBubble(g, x, y, Color.YELLOW, 210, "<-");
+		if(isPresentTense()) drawBubble(g, x, y, Color.YELLOW, 270, " \\/");
+		if(isFutureTense()) drawBubble(g, x, y, Color.YELLOW, 330, "->");
 
 	}
 }
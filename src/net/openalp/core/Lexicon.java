@@ -0,0 +1,62 @@
+package net.openalp.core;
+
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * The source of every known word. The tokenizer only needs to look words up, so it
+ * can be backed by the editable database (LexiconDAO) or by a compiled read only
+ * file (MappedLexicon).
+ *
+ * @see LexiconDAO
+ * @see MappedLexicon
+ */
+public interface Lexicon {
+    /**
+     * Returns all instances of a word.
+     * @param word  The word you want the token for.
+     * @return  Every token for the word, empty if the word is unknown, or null if the lookup failed.
+     */
+    public LinkedList<Token> get(String word);
+
+    /**
+     * Looks up many words at once.
+     * @param words The words you want the tokens for.
+     * @return Every token for each distinct word, words not in the lexicon map to an empty list.
+     *         The lists must not be modified. Null if the lookup failed.
+     */
+    public Map<String, List<Token>> getAll(Collection<String> words);
+
+    /**
+     * Getter
+     * @return The entries made of more than one word, for the tokenizer to find in running text.
+     */
+    public PhraseIndex getPhrases();
+
+    /**
+     * Suggests corrections for a word that is not in the lexicon.
+     * @param word The misspelt word.
+     * @param limit The most suggestions to return.
+     * @return The closest words, closest first. Empty if there are none.
+     * @see SpellingIndex#suggest(String, int)
+     */
+    public List<String> suggest(String word, int limit);
+}
@@ -0,0 +1,165 @@
+package net.openalp.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * A bounded, least recently used cache of lexicon lookups. Most text is made up of
+ * the same few thousand words, so keeping their tokens in memory saves a trip to
+ * the database for nearly every word we tokenize.
+ *
+ * Words that are not in the lexicon are cached as an empty list, so they must be
+ * invalidated when the lexicon changes. Registering the cache as a LexiconListener
+ * does this automatically.
+ *
+ * All methods are thread safe.
+ */
+public class LexiconCache implements LexiconListener {
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private final int capacity;
+    private final Map<String, List<Token>> entries;
+    private long hits;
+    private long misses;
+    // The newest lexicon version we have been told about, so lookups read before it can be turned away.
+    private long latestChange;
+
+    /**
+     * Creates a cache holding up to DEFAULT_CAPACITY words.
+     */
+    public LexiconCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Class constructor.
+     * @param capacity The maximum number of words to hold before the least recently used are evicted.
+     */
+    public LexiconCache(int capacity) {
+        this.capacity = capacity;
+
+        // An access ordered map evicts the least recently used word first.
+        entries = new LinkedHashMap<String, List<Token>>(capacity * 4 / 3 + 1, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, List<Token>> eldest) {
+                return size() > LexiconCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Looks up a word in the cache.
+     * @param word The word to find.
+     * @return An unmodifiable list of the words tokens, or null if the word is not cached.
+     */
+    public synchronized List<Token> get(String word) {
+        List<Token> tokens = entries.get(word);
+
+        if(tokens == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Stores the tokens for a word, evicting the least recently used word if the cache is full.
+     * @param word The word the tokens belong to.
+     * @param tokens Every token for the word, empty if the word is not in the lexicon.
+     */
+    public synchronized void put(String word, List<Token> tokens) {
+        entries.put(word, Collections.unmodifiableList(new ArrayList<Token>(tokens)));
+    }
+
+    /**
+     * Stores the tokens for a word read from the lexicon, unless the lexicon has changed since
+     * they were read. The check and the store happen under the same lock as wordChanged, so a
+     * change can never slip in between them and leave a stale entry behind.
+     * @param word The word the tokens belong to.
+     * @param tokens Every token for the word, empty if the word is not in the lexicon.
+     * @param readVersion The version of the lexicon when the read started.
+     * @return True if the tokens were cached.
+     */
+    public synchronized boolean put(String word, List<Token> tokens, long readVersion) {
+        if(latestChange > readVersion) {
+            return false;
+        }
+
+        put(word, tokens);
+        return true;
+    }
+
+    /**
+     * Drops a word from the cache. Must be called whenever the word changes in the lexicon.
+     * @param word The word to drop.
+     */
+    public synchronized void invalidate(String word) {
+        entries.remove(word);
+    }
+
+    /**
+     * Drops a changed word from the cache.
+     * @param word The word that changed.
+     * @param version The version of the lexicon that includes the change.
+     */
+    public synchronized void wordChanged(String word, long version) {
+        latestChange = Math.max(latestChange, version);
+        invalidate(word);
+    }
+
+    /**
+     * Drops every word from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The fraction of lookups that were answered from the cache.
+     */
+    public synchronized float getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0f : hits / (float)total;
+    }
+
+    public synchronized String toString() {
+        return "Lexicon cache: " + entries.size() + "/" + capacity + " words, "
+                + hits + " hits, " + misses + " misses (" + Math.round(getHitRate() * 100) + "% hit rate)";
+    }
+}
@@ -0,0 +1,172 @@
+package net.openalp.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Compiles the lexicon database into the immutable binary format read by MappedLexicon.
+ *
+ * Usage: LexiconCompiler [database] [output]
+ *
+ * @see MappedLexicon
+ */
+public class LexiconCompiler {
+    /**
+     * Writes a compiled lexicon. It is written to a new file which then replaces the old one,
+     * so a MappedLexicon still mapping the old file keeps reading what it had, and the old
+     * file is left alone if compiling fails.
+     * @param tokens Every token in the lexicon, in any order.
+     * @param filename The file to write.
+     * @return The number of distinct words written.
+     * @throws IOException If the file could not be written, or the lexicon has more than 256 parts of speech.
+     */
+    public static int compile(List<Token> tokens, String filename) throws IOException {
+        List<Token> sorted = new ArrayList<Token>(tokens);
+        Collections.sort(sorted, new Comparator<Token>() {
+            public int compare(Token a, Token b) {
+                return a.getValue().compareTo(b.getValue());
+            }
+        });
+
+        // Work out the words, where their entries start and the part of speech ids.
+        List<String> words = new ArrayList<String>();
+        List<Integer> firstEntries = new ArrayList<Integer>();
+        List<String> types = new ArrayList<String>();
+        Map<String, Integer> typeIds = new HashMap<String, Integer>();
+        int charCount = 0;
+
+        for(int i = 0; i < sorted.size(); i++) {
+            Token token = sorted.get(i);
+
+            if(words.isEmpty() || !words.get(words.size() - 1).equals(token.getValue())) {
+                words.add(token.getValue());
+                firstEntries.add(i);
+                charCount += token.getValue().length();
+            }
+
+            if(!typeIds.containsKey(token.getType())) {
+                if(types.size() == 256) {
+                    throw new IOException("Too many parts of speech to compile, the limit is 256.");
+                }
+                typeIds.put(token.getType(), types.size());
+                types.add(token.getType());
+            }
+        }
+
+        File target = new File(filename).getAbsoluteFile();
+        File temp = File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+        boolean written = false;
+
+        try {
+            write(temp, words, firstEntries, sorted, types, typeIds, charCount);
+            replace(temp, target);
+            written = true;
+        } finally {
+            if(!written) {
+                temp.delete();
+            }
+        }
+
+        return words.size();
+    }
+
+    private static void write(File file, List<String> words, List<Integer> firstEntries, List<Token> sorted,
+                              List<String> types, Map<String, Integer> typeIds, int charCount) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+
+        try {
+            out.writeInt(MappedLexicon.MAGIC);
+            out.writeInt(MappedLexicon.VERSION);
+            out.writeInt(words.size());
+            out.writeInt(sorted.size());
+            out.writeInt(types.size());
+            out.writeInt(charCount);
+
+            int offset = 0;
+            for(String word: words) {
+                out.writeInt(offset);
+                offset += word.length();
+            }
+            out.writeInt(offset);
+
+            for(Integer first: firstEntries) {
+                out.writeInt(first);
+            }
+            out.writeInt(sorted.size());
+
+            for(String word: words) {
+                out.writeChars(word);
+            }
+
+            for(Token token: sorted) {
+                out.writeByte(typeIds.get(token.getType()));
+                out.writeByte(token.getFlags());
+            }
+
+            for(String type: types) {
+                out.writeShort(type.length());
+                out.writeChars(type);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    // Renames the new file over the old one, which keeps its contents for anything that still has it mapped.
+    private static void replace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static void main(String[] args) {
+        String database = args.length > 0 ? args[0] : LexiconDAO.DEFAULT_DATABASE;
+        String output = args.length > 1 ? args[1] : MappedLexicon.DEFAULT_FILE;
+
+        LexiconDAO lexicon = new LexiconDAO(database);
+        List<Token> tokens = lexicon.readAll();
+        lexicon.close();
+
+        if(tokens == null) {
+            System.exit(1);
+        }
+
+        try {
+            int words = compile(tokens, output);
+            System.out.println("Compiled " + words + " words (" + tokens.size() + " entries) into '" + output + "'.");
+        } catch(IOException e) {
+            System.out.println("Error compiling lexicon: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -24,29 +24,90 @@
 
 package net.openalp.core;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class LexiconDAO {
-	private static final String databaseURL = "jdbc:sqlite:data/lexicon.db";
+public class LexiconDAO implements Lexicon {
+	public static final String DEFAULT_DATABASE = "data/lexicon.db";
+	// SQLite allows at most 999 parameters in a single statement.
+	private static final int LOOKUP_CHUNK_SIZE = 500;
+	// Seconds to wait for another connection to release its lock on the database.
+	private static final int BUSY_TIMEOUT = 10;
+	private static final int MAX_READERS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+	private static final double FILTER_FALSE_POSITIVE_RATE = 0.01;
+	// A removed word stays in the filter until it is rebuilt. This fraction of its capacity can be removed first.
+	private static final int FILTER_STALE_FRACTION = 8;
+	// Rows sent to the database at once, and committed at once, during an import.
+	private static final int IMPORT_BATCH_SIZE = 5000;
+	private static final int IMPORT_TRANSACTION_SIZE = 100000;
+	private static final String CREATE_INDEX = "CREATE INDEX IF NOT EXISTS lexicon_word ON lexicon (word);";
 	private Connection db;
 	private PreparedStatement insert;
 	private PreparedStatement delete;
+	private final Object writeLock = new Object();
+	private final BlockingQueue<ReadConnection> readers = new ArrayBlockingQueue<ReadConnection>(MAX_READERS);
+	private int openReaders = 0;
+	// Bumped whenever the connections are reopened, so older read connections are closed rather than pooled.
+	private int generation = 0;
+	private final String databaseURL;
+	private final File file;
+	private long fileModified;
+	private long fileLength;
+	private final AtomicLong version = new AtomicLong();
+	private final List<LexiconListener> listeners = new CopyOnWriteArrayList<LexiconListener>();
+	// A fingerprint of every token of each word, so a reload can tell which words changed.
+	private final Map<String, Integer> fingerprints = new HashMap<String, Integer>();
+	private final LexiconCache cache = new LexiconCache();
+	// Replaced rather than modified when rebuilt, volatile so readers always see the latest words.
+	private volatile BloomFilter filter;
+	// Words removed since the filter was last rebuilt. They only cost a wasted query, so rebuilding is put off.
+	private int staleWords = 0;
+	private final LexiconTrie index = new LexiconTrie();
+	private final PhraseIndex phrases = new PhraseIndex();
+	// Built the first time a suggestion is asked for, then kept up to date by a listener.
+	private volatile SpellingIndex speller;
 
      /**
      * Class constructor. Creates the database connection. If the database connection
      * fails it will exit the program.
      */
 	public LexiconDAO() {
+		this(DEFAULT_DATABASE);
+	}
+
+     /**
+     * Class constructor. Creates the database connection. If the database connection
+     * fails it will exit the program.
+     * @param filename The SQLite database holding the lexicon.
+     */
+	public LexiconDAO(String filename) {
+		databaseURL = "jdbc:sqlite:" + filename;
+		file = new File(filename);
+		addLexiconListener(cache);
+
 		try {
 			Class.forName("org.sqlite.JDBC");
 
 			// and connect
-			db = DriverManager.getConnection(databaseURL);
-			insert = db.prepareStatement("INSERT INTO lexicon (word, type, firstPerson, secondPerson, thirdPerson, pastTense, presentTense, futureTense) values (?, ?, ?, ?, ?, ?, ?, ?);");
-			delete = db.prepareStatement("DELETE FROM lexicon WHERE word=?;");
-//				select = db.prepareStatement("SELECT * FROM lexicon WHERE word=?;");
-
+			openWriter();
+			reindex();
+			recordFile();
 		} catch (SQLException e) {
 			System.out.println("Database connection error: " + e.getMessage());
 			e.printStackTrace();
@@ -57,23 +118,36 @@ public class LexiconDAO {
 		}
 	}
 
+	private void openWriter() throws SQLException {
+		db = DriverManager.getConnection(databaseURL);
+		db.createStatement().executeUpdate(CREATE_INDEX);
+		insert = db.prepareStatement("INSERT INTO lexicon (word, type, firstPerson, secondPerson, thirdPerson, pastTense, presentTense, futureTense) values (?, ?, ?, ?, ?, ?, ?, ?);");
+		delete = db.prepareStatement("DELETE FROM lexicon WHERE word=?;");
+		insert.setQueryTimeout(BUSY_TIMEOUT);
+		delete.setQueryTimeout(BUSY_TIMEOUT);
+	}
+
      /**
      * Adds a new token to the lexicons backing store.
      * @param t The token to add.
      */
     public void add(Token t) {
-		try {
-			insert.setString(1, t.getValue());
-			insert.setString(2, t.getType());
-			insert.setBoolean(3, t.isFirstPerson());
-			insert.setBoolean(4, t.isSecondPerson());
-			insert.setBoolean(5, t.isThirdPerson());
-			insert.setBoolean(6, t.isPastTense());
-			insert.setBoolean(7, t.isPresentTense());
-			insert.setBoolean(8, t.isFutureTense());
-			insert.executeUpdate();
-		} catch (SQLException e) {
-			System.err.println("Error adding '" + t + "' to lexicon: " + e.getMessage());
+		synchronized(writeLock) {
+			try {
+				bindInsert(t);
+				insert.executeUpdate();
+
+				String word = t.getValue();
+				Integer fingerprint = fingerprints.get(word);
+				fingerprints.put(word, (fingerprint == null ? 0 : fingerprint) + fingerprint(t));
+				addToFilter(word);
+				index.add(word);
+				phrases.add(word);
+				recordFile();
+				publish(Collections.singletonList(word));
+			} catch (SQLException e) {
+				System.err.println("Error adding '" + t + "' to lexicon: " + e.getMessage());
+			}
 		}
 	}
 
@@ -82,11 +156,399 @@ public class LexiconDAO {
      * @param word  The word to remove.
      */
 	public void remove(String word) {
+		synchronized(writeLock) {
+			try {
+				delete.setString(1, word);
+				delete.executeUpdate();
+				recordFile();
+
+				if(fingerprints.remove(word) != null) {
+					removeFromFilter();
+					index.remove(word);
+					phrases.remove(word);
+					publish(Collections.singletonList(word));
+				}
+			} catch (SQLException e) {
+				System.err.println("Error removing '" + word + "' from lexicon: " + e.getMessage());
+			}
+		}
+	}
+
+    /**
+     * Imports a word list into the lexicon. Each line holds a word, its type, its person mask and
+     * its tense mask (the same masks as the define command) separated by commas or tabs. Blank
+     * lines and lines starting with a hash(#) are skipped.
+     *
+     * Rows are inserted in large batched transactions and the word index is only rebuilt
+     * once at the end, which is many times faster than calling add for each word.
+     * @param source The word list. It is read as a stream, so it can be any size.
+     * @return The number of words imported.
+     * @throws IOException If the word list could not be read. Transactions already committed are kept.
+     * @throws SQLException If the words could not be written. Transactions already committed are kept.
+     */
+	public int importWords(Reader source) throws IOException, SQLException {
+		BufferedReader in = new BufferedReader(source);
+		int imported = 0;
+
+		synchronized(writeLock) {
+			Statement statement = db.createStatement();
+			statement.setQueryTimeout(BUSY_TIMEOUT);
+			statement.executeUpdate("DROP INDEX IF EXISTS lexicon_word;");
+			db.setAutoCommit(false);
+
+			try {
+				String line;
+				int lineNumber = 0;
+
+				while((line = in.readLine()) != null) {
+					lineNumber++;
+					line = line.trim();
+					if(line.length() == 0 || line.charAt(0) == '#') {
+						continue;
+					}
+
+					String[] fields = line.split("\\s*[,\t]\\s*");
+					if(fields.length != 4) {
+						System.err.println("Skipping line " + lineNumber + " of word list, expected 4 fields: " + line);
+						continue;
+					}
+
+					Token t;
+					try {
+						t = new Token(fields[0], fields[1], Integer.parseInt(fields[2]), Integer.parseInt(fields[3]));
+					} catch(NumberFormatException e) {
+						System.err.println("Skipping line " + lineNumber + " of word list, bad mask: " + line);
+						continue;
+					}
+
+					bindInsert(t);
+					insert.addBatch();
+					imported++;
+
+					if(imported % IMPORT_BATCH_SIZE == 0) {
+						// The SQLite driver does not clear the batch once it has been run.
+						insert.executeBatch();
+						insert.clearBatch();
+					}
+					if(imported % IMPORT_TRANSACTION_SIZE == 0) {
+						db.commit();
+					}
+				}
+
+				insert.executeBatch();
+				insert.clearBatch();
+				db.commit();
+			} catch(IOException e) {
+				insert.clearBatch();
+				db.rollback();
+				throw e;
+			} catch(SQLException e) {
+				insert.clearBatch();
+				db.rollback();
+				throw e;
+			} finally {
+				db.setAutoCommit(true);
+				statement.executeUpdate(CREATE_INDEX);
+				statement.close();
+			}
+
+			recordFile();
+			publish(reindex());
+		}
+
+		return imported;
+	}
+
+    /**
+     * Reopens the database and picks up any changes made to it by other programs, or by
+     * copying a new database over the old one. Listeners are told about every word that
+     * was added, removed or changed.
+     *
+     * Lookups already running finish against the old connection, which is closed once it is
+     * handed back.
+     * @return The number of words that changed.
+     * @throws SQLException If the database could not be reopened.
+     */
+	public int reload() throws SQLException {
+		synchronized(writeLock) {
+			try {
+				db.close();
+			} catch(SQLException e) {
+				System.err.println("Error closing lexicon: " + e.getMessage());
+			}
+			openWriter();
+
+			synchronized(readers) {
+				generation++;
+
+				ReadConnection reader;
+				while((reader = readers.poll()) != null) {
+					reader.close();
+					openReaders--;
+				}
+			}
+
+			recordFile();
+			List<String> changed = reindex();
+			publish(changed);
+			return changed.size();
+		}
+	}
+
+    /**
+     * Reloads the database if its file has been modified since it was last read or written
+     * by this lexicon. Only the files size and modification time are checked, so it is cheap
+     * enough to call before every batch of work.
+     * @return True if the database was reloaded.
+     * @throws SQLException If the database could not be reopened.
+     */
+	public boolean reloadIfModified() throws SQLException {
+		synchronized(writeLock) {
+			if(file.lastModified() == fileModified && file.length() == fileLength) {
+				return false;
+			}
+
+			reload();
+			return true;
+		}
+	}
+
+    /**
+     * Getter
+     * @return The version of the lexicon, which goes up by one with every change.
+     */
+	public long getVersion() {
+		return version.get();
+	}
+
+    /**
+     * Registers a listener to be told about every word that changes from now on.
+     * @param listener The listener.
+     */
+	public void addLexiconListener(LexiconListener listener) {
+		listeners.add(listener);
+	}
+
+    /**
+     * Stops telling a listener about changed words.
+     * @param listener The listener to remove.
+     */
+	public void removeLexiconListener(LexiconListener listener) {
+		listeners.remove(listener);
+	}
+
+    /**
+     * Bumps the version and tells every listener about the words that changed.
+     * Must be called after the change has been written, while holding the write lock.
+     * @param words The words that changed.
+     */
+	private void publish(Collection<String> words) {
+		if(words.isEmpty()) {
+			return;
+		}
+
+		long current = version.incrementAndGet();
+		for(LexiconListener listener: listeners) {
+			for(String word: words) {
+				listener.wordChanged(word, current);
+			}
+		}
+	}
+
+	private void recordFile() {
+		fileModified = file.lastModified();
+		fileLength = file.length();
+	}
+
+    /**
+     * Reads every token in the database and brings the word index and filter up to date.
+     * @return The words that were added, removed or had their tokens changed since the last call.
+     * @throws SQLException If the tokens could not be read.
+     */
+	private List<String> reindex() throws SQLException {
+		Map<String, Integer> current = new HashMap<String, Integer>();
+
+		ReadConnection reader = borrowReader();
 		try {
-			delete.setString(1, word);
-			delete.executeUpdate();
-		} catch (SQLException e) {
-			System.err.println("Error removing '" + word + "' from lexicon: " + e.getMessage());
+			ResultSet rs = reader.connection.createStatement().executeQuery("SELECT * FROM lexicon;");
+			while(rs.next()) {
+				Token t = readToken(rs);
+				Integer fingerprint = current.get(t.getValue());
+				current.put(t.getValue(), (fingerprint == null ? 0 : fingerprint) + fingerprint(t));
+			}
+			rs.close();
+		} finally {
+			releaseReader(reader);
+		}
+
+		List<String> changed = new ArrayList<String>();
+		for(Map.Entry<String, Integer> entry: current.entrySet()) {
+			Integer previous = fingerprints.get(entry.getKey());
+			if(previous == null) {
+				index.add(entry.getKey());
+				phrases.add(entry.getKey());
+			}
+			if(!entry.getValue().equals(previous)) {
+				changed.add(entry.getKey());
+			}
+		}
+		for(String word: fingerprints.keySet()) {
+			if(!current.containsKey(word)) {
+				index.remove(word);
+				phrases.remove(word);
+				changed.add(word);
+			}
+		}
+
+		fingerprints.clear();
+		fingerprints.putAll(current);
+		if(filter == null || !changed.isEmpty()) {
+			rebuildFilter(fingerprints.keySet());
+		}
+
+		return changed;
+	}
+
+    /**
+     * Hashes a token so that the fingerprints of a words tokens can simply be added together,
+     * giving the same result whatever order the database returns them in.
+     */
+	private static int fingerprint(Token t) {
+		int hash = t.getSignature() * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	private void bindInsert(Token t) throws SQLException {
+		insert.setString(1, t.getValue());
+		insert.setString(2, t.getType());
+		insert.setBoolean(3, t.isFirstPerson());
+		insert.setBoolean(4, t.isSecondPerson());
+		insert.setBoolean(5, t.isThirdPerson());
+		insert.setBoolean(6, t.isPastTense());
+		insert.setBoolean(7, t.isPresentTense());
+		insert.setBoolean(8, t.isFutureTense());
+	}
+
+    /**
+     * Getter
+     * @return The cache sitting in front of the database, useful for its hit and miss counters.
+     */
+    public LexiconCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Getter
+     * @return The filter used to turn away unknown words, useful for its false positive rate.
+     */
+    public BloomFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Getter
+     * @return The index of every word, for prefix and wildcard searches.
+     */
+    public LexiconTrie getIndex() {
+        return index;
+    }
+
+    /**
+     * Getter
+     * @return The index of every entry made of more than one word.
+     */
+	public PhraseIndex getPhrases() {
+		return phrases;
+	}
+
+    /**
+     * Getter
+     * @return The spelling suggestion index, built from every word the first time it is needed.
+     */
+	public SpellingIndex getSpeller() {
+		SpellingIndex current = speller;
+		if(current != null) {
+			return current;
+		}
+
+		// Holding the write lock means no word can change between indexing the words and listening for changes.
+		synchronized(writeLock) {
+			if(speller == null) {
+				final SpellingIndex built = new SpellingIndex();
+				index.search(String.valueOf(LexiconTrie.ANY_SEQUENCE), 0, Integer.MAX_VALUE, new LexiconTrie.Visitor() {
+					public boolean visit(String word) {
+						built.add(word);
+						return true;
+					}
+				});
+
+				addLexiconListener(new LexiconListener() {
+					public void wordChanged(String word, long version) {
+						if(index.contains(word)) {
+							built.add(word);
+						} else {
+							built.remove(word);
+						}
+					}
+				});
+				speller = built;
+			}
+			return speller;
+		}
+	}
+
+    /**
+     * Suggests known words close to a word that may be misspelled, closest first.
+     * @param word The word to find suggestions for.
+     * @param limit The most suggestions to return.
+     * @return The suggested words.
+     */
+	public List<String> suggest(String word, int limit) {
+		return getSpeller().suggest(word, limit);
+	}
+
+    /**
+     * Rebuilds the unknown word filter, dropping any words that have been removed since it was last built.
+     * @param words Every word in the database.
+     */
+	private void rebuildFilter(Collection<String> words) {
+		// Leave room to grow before the false positive rate climbs.
+		BloomFilter rebuilt = new BloomFilter(words.size() * 2 + 1024, FILTER_FALSE_POSITIVE_RATE);
+		for(String word: words) {
+			rebuilt.add(word);
+		}
+
+		if(filter != null) {
+			rebuilt.inheritStatistics(filter);
+		}
+		filter = rebuilt;
+		staleWords = 0;
+	}
+
+    /**
+     * Notes that a word has left the database. The filter can only grow, so the word still gets
+     * through it. Rather than rebuild the filter for every word, it is rebuilt once enough words
+     * have gone that they would noticeably raise the false positive rate.
+     */
+	private void removeFromFilter() {
+		staleWords++;
+		if(staleWords > filter.getCapacity() / FILTER_STALE_FRACTION) {
+			rebuildFilter(fingerprints.keySet());
+		}
+	}
+
+    /**
+     * Adds a new word to the unknown word filter, rebuilding it if it has grown past its capacity.
+     * @param word The word that was added to the database.
+     */
+	private void addToFilter(String word) {
+		BloomFilter current = filter;
+		if(current.size() >= current.getCapacity()) {
+			rebuildFilter(fingerprints.keySet());
+		} else {
+			current.add(word);
+			// Republish so readers are guaranteed to see the new bits.
+			filter = current;
 		}
 	}
 
@@ -97,12 +559,10 @@ public class LexiconDAO {
 	public String toString() {
 		StringBuffer buffer = new StringBuffer();
 
-		Statement s;
-		ResultSet rs;
+		ReadConnection reader = null;
 		try {
-			s = db.createStatement();
-
-			rs = s.executeQuery("SELECT word FROM lexicon;");
+			reader = borrowReader();
+			ResultSet rs = reader.connection.createStatement().executeQuery("SELECT word FROM lexicon;");
 			while(rs.next()) {
 				buffer.append(rs.getString("word")).append("\n");
 			}
@@ -110,40 +570,290 @@ public class LexiconDAO {
 
 		} catch(SQLException e) {
 			System.err.println("Error dumping lexicon");
+		} finally {
+			releaseReader(reader);
 		}
 		return buffer.toString();
 	}
 
+    /**
+     * Reads every token in the lexicon.
+     * @return Every token, ordered by word, or null if the lexicon could not be read.
+     */
+	public List<Token> readAll() {
+		List<Token> tokens = new ArrayList<Token>();
+
+		ReadConnection reader = null;
+		try {
+			reader = borrowReader();
+			ResultSet rs = reader.connection.createStatement().executeQuery("SELECT * FROM lexicon ORDER BY word;");
+			while(rs.next()) {
+				tokens.add(readToken(rs));
+			}
+			rs.close();
+		} catch(SQLException e) {
+			System.err.println("Error reading lexicon: " + e.getMessage());
+			return null;
+		} finally {
+			releaseReader(reader);
+		}
+
+		return tokens;
+	}
+
     /**
      * Returns all instances of a word.
      * @param word  The word you want the token for.
      * @return  The token or null, if the word could not be found.
      */
 	public LinkedList<Token> get(String word) {
-		Statement s;
-		ResultSet rs;
-		try {
-			s = db.createStatement();
+		List<Token> cached = cache.get(word);
+		if(cached != null) {
+			return new LinkedList<Token>(cached);
+		}
 
-			rs = s.executeQuery("SELECT * FROM lexicon WHERE word = '" + word + "';");
+		BloomFilter filter = this.filter;
+		if(!filter.mightContain(word)) {
+			return new LinkedList<Token>();
+		}
 
-            LinkedList<Token> tokenList = new LinkedList<Token>();
+		// If the word changes while we are reading it our result may already be stale, so the cache turns it away.
+		long readVersion = version.get();
+		ReadConnection reader = null;
+		try {
+			reader = borrowReader();
+			reader.select.setString(1, word);
+			ResultSet rs = reader.select.executeQuery();
 
-            Token w;
+            LinkedList<Token> tokenList = new LinkedList<Token>();
 
 			while(rs.next()) {
-                w = new Token(word, rs.getString("type"), rs.getBoolean("firstPerson"), rs.getBoolean("secondPerson"), rs.getBoolean("thirdPerson"),
-					rs.getBoolean("pastTense"), rs.getBoolean("presentTense"), rs.getBoolean("futureTense"));
-				//System.err.println("LexiconDAO loaded: " + w);
-                tokenList.add(w);
+                tokenList.add(readToken(rs));
 			}
 			rs.close();
 
+			if(tokenList.isEmpty()) {
+				filter.recordFalsePositive();
+			}
+
+			cache.put(word, tokenList, readVersion);
 			return tokenList;
 		} catch(SQLException e) {
 			System.err.println("Error retreiving '" + word + "' from lexicon: " + e.getMessage());
+		} finally {
+			releaseReader(reader);
 		}
 
 		return null;
 	}
+
+    /**
+     * Looks up many words at once. Duplicate words are only looked up once, words already in the
+     * cache are not looked up at all and the rest are fetched with as few queries as possible.
+     * @param words The words you want the tokens for.
+     * @return Every token for each distinct word, words not in the lexicon map to an empty list.
+     *         The lists are shared with the cache and must not be modified.
+     */
+	public Map<String, List<Token>> getAll(Collection<String> words) {
+		Map<String, List<Token>> result = new HashMap<String, List<Token>>();
+		List<String> missing = new ArrayList<String>();
+		BloomFilter filter = this.filter;
+
+		for(String word: new LinkedHashSet<String>(words)) {
+			List<Token> cached = cache.get(word);
+			if(cached != null) {
+				result.put(word, cached);
+			} else if(!filter.mightContain(word)) {
+				result.put(word, Collections.<Token>emptyList());
+			} else {
+				missing.add(word);
+			}
+		}
+
+		if(missing.isEmpty()) {
+			return result;
+		}
+
+		long readVersion = version.get();
+		ReadConnection reader = null;
+		try {
+			reader = borrowReader();
+
+			for(int i = 0; i < missing.size(); i += LOOKUP_CHUNK_SIZE) {
+				List<String> chunk = missing.subList(i, Math.min(i + LOOKUP_CHUNK_SIZE, missing.size()));
+				Map<String, List<Token>> found = reader.select(chunk);
+
+				for(String word: chunk) {
+					List<Token> tokens = found.get(word);
+					if(tokens == null) {
+						tokens = new LinkedList<Token>();
+						filter.recordFalsePositive();
+					}
+					cache.put(word, tokens, readVersion);
+					result.put(word, tokens);
+				}
+			}
+		} catch(SQLException e) {
+			System.err.println("Error retreiving " + missing.size() + " words from lexicon: " + e.getMessage());
+			return null;
+		} finally {
+			releaseReader(reader);
+		}
+
+		return result;
+	}
+
+    /**
+     * Closes every connection to the database. The lexicon cannot be used afterwards.
+     *
+     * Read connections still in use by a lookup are closed once they are handed back.
+     */
+	public void close() {
+		synchronized(writeLock) {
+			try {
+				db.close();
+			} catch(SQLException e) {
+				System.err.println("Error closing lexicon: " + e.getMessage());
+			}
+		}
+
+		synchronized(readers) {
+			generation++;
+
+			ReadConnection reader;
+			while((reader = readers.poll()) != null) {
+				reader.close();
+				openReaders--;
+			}
+		}
+	}
+
+    /**
+     * Takes a read connection from the pool, opening a new one if the pool has not yet reached
+     * MAX_READERS, otherwise waiting for another thread to finish with one.
+     * @return A read connection that must be handed back with releaseReader.
+     * @throws SQLException If a new connection could not be opened.
+     */
+	private ReadConnection borrowReader() throws SQLException {
+		boolean interrupted = false;
+		try {
+			while(true) {
+				ReadConnection reader = readers.poll();
+				if(reader != null) {
+					return reader;
+				}
+
+				synchronized(readers) {
+					if(openReaders < MAX_READERS) {
+						reader = new ReadConnection(databaseURL, generation);
+						openReaders++;
+						return reader;
+					}
+				}
+
+				// Wake up now and then, a reload may have closed connections rather than returning them.
+				try {
+					reader = readers.poll(100, TimeUnit.MILLISECONDS);
+					if(reader != null) {
+						return reader;
+					}
+				} catch(InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void releaseReader(ReadConnection reader) {
+		if(reader == null) {
+			return;
+		}
+
+		synchronized(readers) {
+			if(reader.generation == generation) {
+				readers.offer(reader);
+				return;
+			}
+			openReaders--;
+		}
+		reader.close();
+	}
+
+	private static Token readToken(ResultSet rs) throws SQLException {
+		return new Token(rs.getString("word"), rs.getString("type"), rs.getBoolean("firstPerson"), rs.getBoolean("secondPerson"), rs.getBoolean("thirdPerson"),
+			rs.getBoolean("pastTense"), rs.getBoolean("presentTense"), rs.getBoolean("futureTense"));
+	}
+
+    /**
+     * A read only connection to the database along with its prepared statements. Each connection
+     * is only ever used by one thread at a time, so many threads can tokenize at once.
+     */
+	private static class ReadConnection {
+		private final Connection connection;
+		private final PreparedStatement select;
+		private final PreparedStatement selectChunk;
+		private final int generation;
+
+		public ReadConnection(String databaseURL, int generation) throws SQLException {
+			this.generation = generation;
+			connection = DriverManager.getConnection(databaseURL);
+			connection.setReadOnly(true);
+
+			select = connection.prepareStatement("SELECT * FROM lexicon WHERE word=?;");
+			select.setQueryTimeout(BUSY_TIMEOUT);
+
+			StringBuilder sql = new StringBuilder("SELECT * FROM lexicon WHERE word IN (");
+			for(int i = 0; i < LOOKUP_CHUNK_SIZE; i++) {
+				sql.append(i == 0 ? "?" : ", ?");
+			}
+			sql.append(");");
+			selectChunk = connection.prepareStatement(sql.toString());
+			selectChunk.setQueryTimeout(BUSY_TIMEOUT);
+		}
+
+        /**
+         * Fetches a chunk of words from the database in a single query.
+         * @param words The words to fetch, no more than LOOKUP_CHUNK_SIZE.
+         * @return The tokens for every word that was found.
+         * @throws SQLException If the query failed.
+         */
+		public Map<String, List<Token>> select(List<String> words) throws SQLException {
+			// Unused parameters are left null, which never matches a word.
+			for(int i = 0; i < LOOKUP_CHUNK_SIZE; i++) {
+				if(i < words.size()) {
+					selectChunk.setString(i + 1, words.get(i));
+				} else {
+					selectChunk.setNull(i + 1, Types.VARCHAR);
+				}
+			}
+
+			Map<String, List<Token>> found = new HashMap<String, List<Token>>();
+			ResultSet rs = selectChunk.executeQuery();
+
+			while(rs.next()) {
+				Token token = readToken(rs);
+				List<Token> tokens = found.get(token.getValue());
+				if(tokens == null) {
+					tokens = new LinkedList<Token>();
+					found.put(token.getValue(), tokens);
+				}
+				tokens.add(token);
+			}
+			rs.close();
+
+			return found;
+		}
+
+		public void close() {
+			try {
+				connection.close();
+			} catch(SQLException e) {
+				System.err.println("Error closing lexicon: " + e.getMessage());
+			}
+		}
+	}
 }
@@ -0,0 +1,36 @@
+package net.openalp.core;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Receives changes to a LexiconDAO. Anything that holds on to words or tokens read from
+ * the lexicon can register one to drop exactly the words that changed, rather than
+ * flushing everything whenever the lexicon is edited.
+ *
+ * Listeners are called on the thread that changed the lexicon, after the change has
+ * been written, so they should be quick.
+ *
+ * @see LexiconDAO#addLexiconListener(LexiconListener)
+ */
+public interface LexiconListener {
+    /**
+     * Called once for each word that was added, removed or had its tokens changed.
+     * @param word The word that changed.
+     * @param version The version of the lexicon that includes the change.
+     */
+    public void wordChanged(String word, long version);
+}
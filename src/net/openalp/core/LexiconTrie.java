@@ -0,0 +1,344 @@
+package net.openalp.core;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * A compressed trie (radix tree) over every word in the lexicon. Chains of nodes with
+ * a single child are collapsed into one edge, so a large dictionary costs roughly one
+ * node per word.
+ *
+ * Words can be searched with a pattern where '*' matches any run of characters and '?'
+ * matches any single character. Matches are handed to a visitor in alphabetical order
+ * as they are found, so a page of results can be taken from the front of a huge
+ * dictionary without building the whole list.
+ *
+ * All methods are thread safe.
+ */
+public class LexiconTrie {
+    public static final char ANY_SEQUENCE = '*';
+    public static final char ANY_CHARACTER = '?';
+    private static final int MAX_PATTERN_LENGTH = 63;
+
+    private final TrieNode root = new TrieNode(new char[0]);
+    private int size;
+
+    /**
+     * Receives matching words from a search.
+     */
+    public interface Visitor {
+        /**
+         * @param word A matching word.
+         * @return false to stop the search.
+         */
+        public boolean visit(String word);
+    }
+
+    /**
+     * Adds a word to the trie.
+     * @param word The word to add.
+     * @return false if the word was already in the trie.
+     */
+    public synchronized boolean add(String word) {
+        TrieNode node = root;
+        int i = 0;
+
+        while(i < word.length()) {
+            int slot = node.find(word.charAt(i));
+
+            if(slot < 0) {
+                TrieNode leaf = new TrieNode(word.substring(i).toCharArray());
+                leaf.word = true;
+                node.insert(-slot - 1, leaf);
+                size++;
+                return true;
+            }
+
+            TrieNode child = node.children[slot];
+            int common = child.commonPrefix(word, i);
+
+            if(common < child.label.length) {
+                // The word leaves this edge part way along, split it in two.
+                char[] head = new char[common];
+                char[] tail = new char[child.label.length - common];
+                System.arraycopy(child.label, 0, head, 0, common);
+                System.arraycopy(child.label, common, tail, 0, tail.length);
+
+                TrieNode split = new TrieNode(head);
+                child.label = tail;
+                split.children = new TrieNode[] {child};
+                node.children[slot] = split;
+                child = split;
+            }
+
+            node = child;
+            i += common;
+        }
+
+        if(node.word) {
+            return false;
+        }
+
+        node.word = true;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes a word from the trie.
+     * @param word The word to remove.
+     * @return false if the word was not in the trie.
+     */
+    public synchronized boolean remove(String word) {
+        if(remove(root, word, 0)) {
+            size--;
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean remove(TrieNode node, String word, int i) {
+        if(i == word.length()) {
+            if(!node.word) {
+                return false;
+            }
+            node.word = false;
+            return true;
+        }
+
+        int slot = node.find(word.charAt(i));
+        if(slot < 0) {
+            return false;
+        }
+
+        TrieNode child = node.children[slot];
+        int common = child.commonPrefix(word, i);
+        if(common < child.label.length || !remove(child, word, i + common)) {
+            return false;
+        }
+
+        // Tidy up so the trie stays compressed.
+        if(!child.word && child.children.length == 0) {
+            node.delete(slot);
+        } else if(!child.word && child.children.length == 1) {
+            TrieNode grandchild = child.children[0];
+            char[] label = new char[child.label.length + grandchild.label.length];
+            System.arraycopy(child.label, 0, label, 0, child.label.length);
+            System.arraycopy(grandchild.label, 0, label, child.label.length, grandchild.label.length);
+            grandchild.label = label;
+            node.children[slot] = grandchild;
+        }
+
+        return true;
+    }
+
+    public synchronized boolean contains(String word) {
+        TrieNode node = root;
+        int i = 0;
+
+        while(i < word.length()) {
+            int slot = node.find(word.charAt(i));
+            if(slot < 0) {
+                return false;
+            }
+
+            node = node.children[slot];
+            if(node.commonPrefix(word, i) < node.label.length) {
+                return false;
+            }
+            i += node.label.length;
+        }
+
+        return node.word;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        root.children = TrieNode.NONE;
+        root.word = false;
+        size = 0;
+    }
+
+    /**
+     * Finds every word matching a pattern, in alphabetical order.
+     * @param pattern The pattern, where '*' matches any run of characters and '?' any single character.
+     * @param skip The number of matches to skip before visiting, for paging through results.
+     * @param limit The most matches to visit.
+     * @param visitor Receives each match as it is found.
+     * @return The number of matches visited.
+     */
+    public synchronized int search(String pattern, int skip, int limit, Visitor visitor) {
+        if(pattern.length() > MAX_PATTERN_LENGTH) {
+            throw new IllegalArgumentException("Search patterns are limited to " + MAX_PATTERN_LENGTH + " characters.");
+        }
+
+        Search search = new Search(pattern.toCharArray(), skip, limit, visitor);
+        search.walk(root, closure(search.pattern, 1L), new StringBuilder());
+        return search.visited;
+    }
+
+    /**
+     * Finds every word starting with a prefix, in alphabetical order.
+     * @param prefix The start of the words.
+     * @param skip The number of matches to skip before visiting, for paging through results.
+     * @param limit The most matches to visit.
+     * @param visitor Receives each match as it is found.
+     * @return The number of matches visited.
+     */
+    public int searchPrefix(String prefix, int skip, int limit, Visitor visitor) {
+        if(prefix.indexOf(ANY_SEQUENCE) >= 0 || prefix.indexOf(ANY_CHARACTER) >= 0) {
+            throw new IllegalArgumentException("Prefixes cannot contain wildcards.");
+        }
+
+        return search(prefix + ANY_SEQUENCE, skip, limit, visitor);
+    }
+
+    // The pattern is matched as a tiny NFA: bit i of the state is set when the first i
+    // characters of the pattern have been matched. A '*' can always be skipped.
+    private static long closure(char[] pattern, long state) {
+        for(int i = 0; i < pattern.length; i++) {
+            if((state & (1L << i)) != 0 && pattern[i] == ANY_SEQUENCE) {
+                state |= 1L << (i + 1);
+            }
+        }
+        return state;
+    }
+
+    private static long step(char[] pattern, long state, char c) {
+        long next = 0;
+
+        for(int i = 0; i < pattern.length; i++) {
+            if((state & (1L << i)) != 0) {
+                char p = pattern[i];
+                if(p == ANY_SEQUENCE) {
+                    next |= 1L << i;
+                } else if(p == ANY_CHARACTER || p == c) {
+                    next |= 1L << (i + 1);
+                }
+            }
+        }
+
+        return closure(pattern, next);
+    }
+
+    private static class Search {
+        private final char[] pattern;
+        private final long accept;
+        private final Visitor visitor;
+        private int skip;
+        private final int limit;
+        private int visited;
+        private boolean stopped;
+
+        public Search(char[] pattern, int skip, int limit, Visitor visitor) {
+            this.pattern = pattern;
+            this.accept = 1L << pattern.length;
+            this.skip = skip;
+            this.limit = limit;
+            this.visitor = visitor;
+        }
+
+        public void walk(TrieNode node, long state, StringBuilder word) {
+            int length = word.length();
+
+            for(char c: node.label) {
+                state = step(pattern, state, c);
+                if(state == 0) {
+                    word.setLength(length);
+                    return;
+                }
+                word.append(c);
+            }
+
+            if(node.word && (state & accept) != 0) {
+                if(skip > 0) {
+                    skip--;
+                } else if(visited < limit) {
+                    visited++;
+                    if(!visitor.visit(word.toString()) || visited == limit) {
+                        stopped = true;
+                    }
+                }
+            }
+
+            for(int i = 0; i < node.children.length && !stopped; i++) {
+                walk(node.children[i], state, word);
+            }
+
+            word.setLength(length);
+        }
+    }
+
+    private static class TrieNode {
+        private static final TrieNode[] NONE = new TrieNode[0];
+
+        private char[] label;
+        private TrieNode[] children = NONE;
+        private boolean word;
+
+        public TrieNode(char[] label) {
+            this.label = label;
+        }
+
+        // Binary search for the child whose label starts with c, or -(insertion point) - 1.
+        public int find(char c) {
+            int low = 0;
+            int high = children.length - 1;
+
+            while(low <= high) {
+                int middle = (low + high) >>> 1;
+                char first = children[middle].label[0];
+
+                if(first < c) {
+                    low = middle + 1;
+                } else if(first > c) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+
+            return -(low + 1);
+        }
+
+        public void insert(int slot, TrieNode child) {
+            TrieNode[] grown = new TrieNode[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, slot);
+            grown[slot] = child;
+            System.arraycopy(children, slot, grown, slot + 1, children.length - slot);
+            children = grown;
+        }
+
+        public void delete(int slot) {
+            TrieNode[] shrunk = children.length == 1 ? NONE : new TrieNode[children.length - 1];
+            System.arraycopy(children, 0, shrunk, 0, slot);
+            System.arraycopy(children, slot + 1, shrunk, slot, children.length - slot - 1);
+            children = shrunk;
+        }
+
+        public int commonPrefix(String word, int start) {
+            int common = 0;
+            while(common < label.length && start + common < word.length() && label[common] == word.charAt(start + common)) {
+                common++;
+            }
+            return common;
+        }
+    }
+}
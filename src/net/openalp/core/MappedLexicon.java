@@ -0,0 +1,346 @@
+package net.openalp.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * A read only lexicon backed by a memory mapped file built by LexiconCompiler.
+ * Opening it costs almost nothing no matter how big the dictionary is, and words
+ * are found with a binary search directly over the mapped file. Tokens are decoded
+ * from the file each time they are looked up, so the dictionary never has to fit
+ * on the heap.
+ *
+ * The file is laid out as:
+ * <ul>
+ *   <li>A header: magic, version, word count, entry count, type count and character count.</li>
+ *   <li>For each word plus one, the offset of its first character in the string pool.</li>
+ *   <li>For each word plus one, the index of its first entry.</li>
+ *   <li>The string pool: every word in sorted order, as UTF-16 characters.</li>
+ *   <li>Two bytes per entry: the part of speech and the packed person and tense flags.</li>
+ *   <li>The part of speech names.</li>
+ * </ul>
+ *
+ * The person and tense flags use the same masks as the define command, packed as
+ * (personMask &lt;&lt; 3) | tenseMask.
+ *
+ * @see LexiconCompiler
+ */
+public class MappedLexicon implements Lexicon {
+    public static final String DEFAULT_FILE = "data/lexicon.bin";
+    static final int MAGIC = 0x4F414C58;    // "OALX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 6 * 4;
+
+    private final int wordCount;
+    private final IntBuffer wordOffsets;
+    private final IntBuffer entryOffsets;
+    private final CharBuffer pool;
+    private final ByteBuffer entries;
+    private final String[] types;
+    // Built the first time they are needed. The words never change, so once published they are read without locking.
+    private volatile SpellingIndex speller;
+    private volatile PhraseIndex phrases;
+
+    /**
+     * Opens the default compiled lexicon.
+     * @throws IOException If the file could not be read or was not built by LexiconCompiler.
+     */
+    public MappedLexicon() throws IOException {
+        this(DEFAULT_FILE);
+    }
+
+    /**
+     * Class constructor. Maps the file into memory, only the part of speech names are read onto the heap.
+     * @param filename The compiled lexicon.
+     * @throws IOException If the file could not be read or was not built by LexiconCompiler.
+     */
+    public MappedLexicon(String filename) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(new File(filename), "r");
+        MappedByteBuffer buffer;
+
+        try {
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        } finally {
+            // The mapping stays valid once the file is closed.
+            file.close();
+        }
+
+        if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("'" + filename + "' is not a compiled lexicon.");
+        }
+
+        wordCount = buffer.getInt(8);
+        int entryCount = buffer.getInt(12);
+        int typeCount = buffer.getInt(16);
+        int charCount = buffer.getInt(20);
+
+        int position = HEADER_SIZE;
+        wordOffsets = section(buffer, position, (wordCount + 1) * 4).asIntBuffer();
+        position += (wordCount + 1) * 4;
+        entryOffsets = section(buffer, position, (wordCount + 1) * 4).asIntBuffer();
+        position += (wordCount + 1) * 4;
+        pool = section(buffer, position, charCount * 2).asCharBuffer();
+        position += charCount * 2;
+        entries = section(buffer, position, entryCount * 2);
+        position += entryCount * 2;
+
+        types = new String[typeCount];
+        for(int i = 0; i < typeCount; i++) {
+            int length = buffer.getShort(position);
+            position += 2;
+
+            char[] name = new char[length];
+            for(int c = 0; c < length; c++, position += 2) {
+                name[c] = buffer.getChar(position);
+            }
+            types[i] = new String(name).intern();
+        }
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, int position, int length) {
+        ByteBuffer section = buffer.duplicate();
+        section.position(position);
+        section.limit(position + length);
+        return section.slice();
+    }
+
+    /**
+     * @return The number of distinct words in the lexicon.
+     */
+    public int size() {
+        return wordCount;
+    }
+
+    /**
+     * Finds a word without allocating anything.
+     * @param text The text holding the word.
+     * @param start The index of the first character of the word.
+     * @param end The index after the last character of the word.
+     * @return The index of the word, or -1 if it is not in the lexicon.
+     */
+    public int find(CharSequence text, int start, int end) {
+        int low = 0;
+        int high = wordCount - 1;
+
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(middle, text, start, end);
+
+            if(comparison < 0) {
+                low = middle + 1;
+            } else if(comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    public int find(CharSequence word) {
+        return find(word, 0, word.length());
+    }
+
+    private int compare(int index, CharSequence text, int start, int end) {
+        int offset = wordOffsets.get(index);
+        int length = wordOffsets.get(index + 1) - offset;
+        int textLength = end - start;
+        int common = Math.min(length, textLength);
+
+        for(int i = 0; i < common; i++) {
+            int difference = pool.get(offset + i) - text.charAt(start + i);
+            if(difference != 0) {
+                return difference;
+            }
+        }
+
+        return length - textLength;
+    }
+
+    /**
+     * @param index The index of a word.
+     * @return The word itself.
+     */
+    public String getWord(int index) {
+        int offset = wordOffsets.get(index);
+        int length = wordOffsets.get(index + 1) - offset;
+        char[] word = new char[length];
+
+        for(int i = 0; i < length; i++) {
+            word[i] = pool.get(offset + i);
+        }
+
+        return new String(word);
+    }
+
+    /**
+     * @param index The index of a word.
+     * @return The index of the words first entry.
+     */
+    public int getFirstEntry(int index) {
+        return entryOffsets.get(index);
+    }
+
+    /**
+     * @param index The index of a word.
+     * @return The index after the words last entry.
+     */
+    public int getEndEntry(int index) {
+        return entryOffsets.get(index + 1);
+    }
+
+    /**
+     * @param entry The index of an entry.
+     * @return The part of speech of the entry.
+     */
+    public String getEntryType(int entry) {
+        return types[entries.get(entry * 2) & 0xFF];
+    }
+
+    /**
+     * @param entry The index of an entry.
+     * @return The person and tense flags of the entry, packed as (personMask &lt;&lt; 3) | tenseMask.
+     */
+    public int getEntryFlags(int entry) {
+        return entries.get(entry * 2 + 1) & 0xFF;
+    }
+
+    /**
+     * Decodes the token for an entry.
+     * @param entry The index of an entry.
+     * @return The token.
+     */
+    public Token getToken(int entry) {
+        return getToken(getWord(findWordOf(entry)), entry);
+    }
+
+    // Decodes an entry of a word we already have as a string.
+    private Token getToken(String word, int entry) {
+        int flags = getEntryFlags(entry);
+        return new Token(word, getEntryType(entry), flags >> 3, flags & 7);
+    }
+
+    private int findWordOf(int entry) {
+        int low = 0;
+        int high = wordCount - 1;
+
+        while(low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if(getFirstEntry(middle) <= entry) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return low;
+    }
+
+    public LinkedList<Token> get(String word) {
+        LinkedList<Token> result = new LinkedList<Token>();
+        int index = find(word);
+
+        if(index >= 0) {
+            for(int entry = getFirstEntry(index); entry < getEndEntry(index); entry++) {
+                result.add(getToken(word, entry));
+            }
+        }
+
+        return result;
+    }
+
+    public Map<String, List<Token>> getAll(Collection<String> words) {
+        Map<String, List<Token>> result = new HashMap<String, List<Token>>();
+
+        for(String word: words) {
+            if(!result.containsKey(word)) {
+                result.put(word, get(word));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Getter
+     * @return The index of every entry made of more than one word, built the first time it is needed.
+     */
+    public PhraseIndex getPhrases() {
+        PhraseIndex current = phrases;
+        if(current != null) {
+            return current;
+        }
+
+        synchronized(this) {
+            if(phrases == null) {
+                PhraseIndex built = new PhraseIndex();
+
+                // Only words holding a space can be phrases, so only they need to be read.
+                for(int i = 0; i < wordCount; i++) {
+                    for(int c = wordOffsets.get(i); c < wordOffsets.get(i + 1); c++) {
+                        if(Character.isWhitespace(pool.get(c))) {
+                            built.add(getWord(i));
+                            break;
+                        }
+                    }
+                }
+                phrases = built;
+            }
+            return phrases;
+        }
+    }
+
+    public List<String> suggest(String word, int limit) {
+        return getSpeller().suggest(word, limit);
+    }
+
+    /**
+     * Getter
+     * @return The spelling suggestion index, built from every word the first time it is needed.
+     */
+    public SpellingIndex getSpeller() {
+        SpellingIndex current = speller;
+        if(current != null) {
+            return current;
+        }
+
+        synchronized(this) {
+            if(speller == null) {
+                SpellingIndex built = new SpellingIndex();
+                for(int i = 0; i < wordCount; i++) {
+                    built.add(getWord(i));
+                }
+                speller = built;
+            }
+            return speller;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package net.openalp.core;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * An index of the lexicon entries made of more than one word, such as "in front of".
+ * Phrases are stored in a trie keyed by whole words, so the tokenizer can find the
+ * longest phrase starting at a word by walking forward one word at a time, stopping as
+ * soon as no phrase continues that way.
+ *
+ * Words are folded to lower case, the same as TextScanner folds them, and any whitespace
+ * between them matches. Phrases never span a symbol or terminator.
+ *
+ * All methods are thread safe. Lookups share a read lock, so they only wait for add and remove,
+ * never for each other.
+ */
+public class PhraseIndex {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final WordNode root = new WordNode();
+    private int size = 0;
+
+    /**
+     * Tells whether a lexicon entry is a phrase.
+     * @param entry A word from the lexicon.
+     * @return True if it holds more than one word.
+     */
+    public static boolean isPhrase(String entry) {
+        return countWords(entry) > 1;
+    }
+
+    /**
+     * @param entry A word or phrase from the lexicon.
+     * @return The number of whitespace separated words in it.
+     */
+    public static int countWords(String entry) {
+        int words = 0;
+        boolean inWord = false;
+
+        for(int i = 0; i < entry.length(); i++) {
+            boolean whitespace = Character.isWhitespace(entry.charAt(i));
+            if(!whitespace && !inWord) {
+                words++;
+            }
+            inWord = !whitespace;
+        }
+
+        return words;
+    }
+
+    private static String[] split(String entry) {
+        String trimmed = entry.trim();
+        return trimmed.length() == 0 ? new String[0] : TextScanner.fold(trimmed).split("\\s+");
+    }
+
+    /**
+     * Adds a phrase to the index. Entries of a single word are ignored.
+     * @param entry The phrase exactly as it is stored in the lexicon.
+     * @return True if the phrase was added.
+     */
+    public boolean add(String entry) {
+        lock.writeLock().lock();
+        try {
+            String[] words = split(entry);
+            if(words.length < 2) {
+                return false;
+            }
+
+            WordNode node = root;
+            for(String word: words) {
+                WordNode child = node.children.get(word);
+                if(child == null) {
+                    child = new WordNode();
+                    node.children.put(word, child);
+                }
+                node = child;
+            }
+
+            if(node.phrase != null) {
+                return false;
+            }
+
+            node.phrase = entry;
+            node.length = words.length;
+            size++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a phrase from the index.
+     * @param entry The phrase exactly as it is stored in the lexicon.
+     * @return True if the phrase was in the index.
+     */
+    public boolean remove(String entry) {
+        lock.writeLock().lock();
+        try {
+            String[] words = split(entry);
+            if(words.length < 2 || !remove(root, words, 0, entry)) {
+                return false;
+            }
+
+            size--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean remove(WordNode node, String[] words, int depth, String entry) {
+        if(depth == words.length) {
+            if(!entry.equals(node.phrase)) {
+                return false;
+            }
+            node.phrase = null;
+            return true;
+        }
+
+        WordNode child = node.children.get(words[depth]);
+        if(child == null || !remove(child, words, depth + 1, entry)) {
+            return false;
+        }
+
+        if(child.phrase == null && child.children.isEmpty()) {
+            node.children.remove(words[depth]);
+        }
+        return true;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the longest phrase starting at a word.
+     * @param words Folded words, as returned by TextScanner.getWords.
+     * @param start The index of the first word of the phrase.
+     * @param end The index after the last word the phrase may use.
+     * @return The number of words in the longest phrase, or 0 if no phrase starts at the word.
+     */
+    public int match(List<String> words, int start, int end) {
+        lock.readLock().lock();
+        try {
+            WordNode node = root;
+            int longest = 0;
+
+            for(int i = start; i < end && !node.children.isEmpty(); i++) {
+                node = node.children.get(words.get(i));
+                if(node == null) {
+                    break;
+                }
+                if(node.phrase != null) {
+                    longest = node.length;
+                }
+            }
+
+            return longest;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the lexicon entry for a phrase found by match.
+     * @param words Folded words, as returned by TextScanner.getWords.
+     * @param start The index of the first word of the phrase.
+     * @param length The number of words in the phrase, as returned by match.
+     * @return The phrase exactly as it is stored in the lexicon, or null if there is no such phrase.
+     */
+    public String getPhrase(List<String> words, int start, int length) {
+        lock.readLock().lock();
+        try {
+            WordNode node = root;
+
+            for(int i = start; i < start + length && node != null; i++) {
+                node = node.children.get(words.get(i));
+            }
+
+            return node == null ? null : node.phrase;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static class WordNode {
+        private final Map<String, WordNode> children = new HashMap<String, WordNode>(2);
+        private String phrase;
+        private int length;
+    }
+}
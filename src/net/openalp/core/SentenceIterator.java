@@ -0,0 +1,204 @@
+package net.openalp.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Tokenizes a stream of text one sentence at a time, so text of any size can be
+ * validated or trained on without reading it all into memory first.
+ *
+ * Text is read into a buffer and everything up to the last terminator in it is
+ * tokenized at once, so words are still looked up in bulk. A sentence is never split
+ * across buffers unless it grows longer than MAX_SENTENCE_LENGTH, in which case it is
+ * cut at the last word boundary. Memory use is bounded by MAX_SENTENCE_LENGTH however
+ * long the stream is.
+ *
+ * The start, end and error positions of each sentence count from its getOffset(), so
+ * positions are exact however far into the stream they are.
+ *
+ * If the stream cannot be read the error is reported, iteration stops and the error
+ * is available from getException().
+ *
+ * @see Tokenizer#iterate(java.io.Reader)
+ */
+public class SentenceIterator implements Iterator<TokenizedSentence> {
+    public static final int MAX_SENTENCE_LENGTH = 1 << 16;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Tokenizer tokenizer;
+    private final Reader source;
+    private char[] buffer = new char[BUFFER_SIZE];
+    private CharBuffer text = CharBuffer.wrap(buffer);
+    // The position in the stream of the first character in the buffer.
+    private long bufferOffset = 0;
+    private int position = 0;
+    private int limit = 0;
+    private boolean finished = false;
+    private IOException exception;
+    private final LinkedList<TokenizedSentence> pending = new LinkedList<TokenizedSentence>();
+
+    /**
+     * Class constructor.
+     * @param tokenizer The tokenizer to tokenize the text with.
+     * @param source The text. It is read as it is needed and closed when it runs out.
+     */
+    public SentenceIterator(Tokenizer tokenizer, Reader source) {
+        this.tokenizer = tokenizer;
+        this.source = source;
+    }
+
+    public boolean hasNext() {
+        while(pending.isEmpty()) {
+            if(position == limit && finished) {
+                return false;
+            }
+            tokenizeNext();
+        }
+
+        return true;
+    }
+
+    public TokenizedSentence next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return pending.removeFirst();
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return The error that stopped the stream being read, or null if there was none.
+     */
+    public IOException getException() {
+        return exception;
+    }
+
+    /**
+     * Tokenizes the buffered text up to the last terminator, reading more text first if there is none.
+     */
+    private void tokenizeNext() {
+        int end = lastTerminator();
+
+        while(end < 0 && !finished) {
+            if(limit - position >= MAX_SENTENCE_LENGTH) {
+                end = lastBoundary();
+                break;
+            }
+
+            // Only the new text needs searching, reading may move the unread text to the front of the buffer.
+            int scanned = limit - position;
+            read();
+            end = lastTerminator(position + scanned);
+        }
+
+        if(end < 0) {
+            // The stream has ended, whatever is left is the last sentence.
+            end = limit;
+        }
+
+        List<TokenizedSentence> sentences = tokenizer.tokenize(text, position, end);
+        for(TokenizedSentence sentence: sentences) {
+            sentence.setOffset(bufferOffset);
+        }
+        pending.addAll(sentences);
+        position = end;
+    }
+
+    private int lastTerminator() {
+        return lastTerminator(position);
+    }
+
+    /**
+     * @param from The first character that might hold a terminator.
+     * @return The index after the last terminator in the buffer, or -1 if there is none.
+     */
+    private int lastTerminator(int from) {
+        for(int i = limit - 1; i >= from; i--) {
+            if(TextScanner.classify(buffer[i]) == TextScanner.TERMINATOR) {
+                return i + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return The index after the last character that is not part of a word, or the end of the buffer if every character is.
+     */
+    private int lastBoundary() {
+        for(int i = limit - 1; i > position; i--) {
+            if(TextScanner.classify(buffer[i]) != TextScanner.WORD) {
+                return i + 1;
+            }
+        }
+
+        return limit;
+    }
+
+    /**
+     * Reads more text, moving the unread text to the front of the buffer and growing it if it is full.
+     */
+    private void read() {
+        if(position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            bufferOffset += position;
+            limit -= position;
+            position = 0;
+        }
+
+        if(limit == buffer.length) {
+            char[] grown = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, limit);
+            buffer = grown;
+            text = CharBuffer.wrap(buffer);
+        }
+
+        try {
+            int read = source.read(buffer, limit, buffer.length - limit);
+            if(read < 0) {
+                finish();
+            } else {
+                limit += read;
+            }
+        } catch(IOException e) {
+            System.err.println("Error reading text: " + e.getMessage());
+            exception = e;
+            finish();
+        }
+    }
+
+    private void finish() {
+        finished = true;
+
+        try {
+            source.close();
+        } catch(IOException e) {
+            System.err.println("Error closing text: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package net.openalp.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Suggests corrections for misspelt words.
+ *
+ * Rather than measuring the distance from a misspelling to every word in the lexicon,
+ * every word is stored under each string that can be made by deleting up to
+ * maxDistance of its characters. Deleting up to maxDistance characters from the
+ * misspelling then finds every word within that many edits with a handful of hash
+ * lookups, however big the lexicon is. Only the candidates found this way have their
+ * real edit distance measured.
+ *
+ * Only the first prefixLength characters of each word are used for the deletions,
+ * which keeps the index small without missing any corrections, at the cost of checking
+ * a few more candidates for long words.
+ *
+ * All methods are thread safe. Lookups share a read lock, so they only wait for add and remove,
+ * never for each other.
+ */
+public class SpellingIndex {
+    public static final int DEFAULT_MAX_DISTANCE = 2;
+    public static final int DEFAULT_PREFIX_LENGTH = 7;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int maxDistance;
+    private final int prefixLength;
+    private final Set<String> words = new HashSet<String>();
+    // Each deletion of a words prefix, mapped to every word it came from.
+    private final Map<String, List<String>> deletes = new HashMap<String, List<String>>();
+    private int longestWord = 0;
+
+    /**
+     * Creates an index suggesting words up to DEFAULT_MAX_DISTANCE edits away.
+     */
+    public SpellingIndex() {
+        this(DEFAULT_MAX_DISTANCE, DEFAULT_PREFIX_LENGTH);
+    }
+
+    /**
+     * Class constructor.
+     * @param maxDistance The most insertions, deletions, substitutions and transpositions a suggestion can be from the misspelling.
+     * @param prefixLength The number of characters of each word to index, must be more than maxDistance.
+     */
+    public SpellingIndex(int maxDistance, int prefixLength) {
+        if(prefixLength <= maxDistance) {
+            throw new IllegalArgumentException("Prefix length must be more than the maximum distance");
+        }
+
+        this.maxDistance = maxDistance;
+        this.prefixLength = prefixLength;
+    }
+
+    /**
+     * Adds a word to the index.
+     * @param word The word to add.
+     * @return True if the word was not already in the index.
+     */
+    public boolean add(String word) {
+        lock.writeLock().lock();
+        try {
+            if(!words.add(word)) {
+                return false;
+            }
+
+            longestWord = Math.max(longestWord, word.length());
+
+            for(String delete: deletesOf(word)) {
+                List<String> from = deletes.get(delete);
+                if(from == null) {
+                    from = new ArrayList<String>(1);
+                    deletes.put(delete, from);
+                }
+                from.add(word);
+            }
+
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a word from the index.
+     * @param word The word to remove.
+     * @return True if the word was in the index.
+     */
+    public boolean remove(String word) {
+        lock.writeLock().lock();
+        try {
+            if(!words.remove(word)) {
+                return false;
+            }
+
+            for(String delete: deletesOf(word)) {
+                List<String> from = deletes.get(delete);
+                from.remove(word);
+                if(from.isEmpty()) {
+                    deletes.remove(delete);
+                }
+            }
+
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(String word) {
+        lock.readLock().lock();
+        try {
+            return words.contains(word);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return words.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the words closest to a misspelling. Suggestions are ordered by edit distance,
+     * then by how close their length is to the misspelling, then alphabetically.
+     *
+     * Short words allow fewer edits, about one for every three characters up to maxDistance,
+     * otherwise a short misspelling would match most short words in the lexicon.
+     * @param misspelling The word to correct.
+     * @param limit The most suggestions to return.
+     * @return The suggestions, empty if there are none. A word in the index is never suggested for itself.
+     */
+    public List<String> suggest(String misspelling, int limit) {
+        lock.readLock().lock();
+        try {
+            final int length = misspelling.length();
+            int distance = Math.min(maxDistance, (length + 1) / 3);
+            if(distance == 0 || length - distance > longestWord) {
+                return Collections.emptyList();
+            }
+
+            final Map<String, Integer> found = new HashMap<String, Integer>();
+            Set<String> checked = new HashSet<String>();
+            Set<String> visited = new HashSet<String>();
+            LinkedList<String> candidates = new LinkedList<String>();
+
+            String prefix = length > prefixLength ? misspelling.substring(0, prefixLength) : misspelling;
+            candidates.add(prefix);
+            visited.add(prefix);
+
+            // Candidates are generated one deletion at a time, so they come off the queue shortest deletion first.
+            while(!candidates.isEmpty()) {
+                String candidate = candidates.removeFirst();
+                int deleted = prefix.length() - candidate.length();
+
+                List<String> from = deletes.get(candidate);
+                if(from != null) {
+                    for(String word: from) {
+                        if(Math.abs(word.length() - length) > distance || !checked.add(word) || word.equals(misspelling)) {
+                            continue;
+                        }
+
+                        int d = distance(misspelling, word, distance);
+                        if(d <= distance) {
+                            found.put(word, d);
+                        }
+                    }
+                }
+
+                if(deleted < distance) {
+                    for(int i = 0; i < candidate.length(); i++) {
+                        String delete = candidate.substring(0, i) + candidate.substring(i + 1);
+                        if(visited.add(delete)) {
+                            candidates.add(delete);
+                        }
+                    }
+                }
+            }
+
+            List<String> suggestions = new ArrayList<String>(found.keySet());
+            Collections.sort(suggestions, new Comparator<String>() {
+                public int compare(String a, String b) {
+                    int order = found.get(a) - found.get(b);
+                    if(order == 0) {
+                        order = Math.abs(a.length() - length) - Math.abs(b.length() - length);
+                    }
+                    if(order == 0) {
+                        order = a.compareTo(b);
+                    }
+                    return order;
+                }
+            });
+
+            return suggestions.size() > limit ? new ArrayList<String>(suggestions.subList(0, limit)) : suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Every string made by deleting up to maxDistance characters from the prefix of a word, including the prefix itself.
+     */
+    private Set<String> deletesOf(String word) {
+        String prefix = word.length() > prefixLength ? word.substring(0, prefixLength) : word;
+        Set<String> result = new HashSet<String>();
+        List<String> current = Collections.singletonList(prefix);
+        result.add(prefix);
+
+        for(int d = 0; d < maxDistance; d++) {
+            List<String> next = new ArrayList<String>();
+            for(String s: current) {
+                for(int i = 0; i < s.length(); i++) {
+                    String delete = s.substring(0, i) + s.substring(i + 1);
+                    if(result.add(delete)) {
+                        next.add(delete);
+                    }
+                }
+            }
+            current = next;
+        }
+
+        return result;
+    }
+
+    /**
+     * The optimal string alignment distance between two words: the number of insertions, deletions,
+     * substitutions and transpositions of adjacent characters needed to turn one into the other.
+     * @param a The first word.
+     * @param b The second word.
+     * @param max The largest distance we care about.
+     * @return The distance, or max + 1 if it is more than max.
+     */
+    static int distance(String a, String b, int max) {
+        int[] previous = new int[b.length() + 1];
+        int[] row = new int[b.length() + 1];
+        int[] next = new int[b.length() + 1];
+
+        for(int j = 0; j <= b.length(); j++) {
+            row[j] = j;
+        }
+
+        for(int i = 1; i <= a.length(); i++) {
+            int[] swap = previous;
+            previous = row;
+            row = next;
+            next = swap;
+
+            row[0] = i;
+            int smallest = i;
+
+            for(int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(row[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+
+                if(i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d = Math.min(d, next[j - 2] + 1);
+                }
+
+                row[j] = d;
+                smallest = Math.min(smallest, d);
+            }
+
+            // Every later row is at least as big as the smallest value in this one.
+            if(smallest > max) {
+                return max + 1;
+            }
+        }
+
+        return Math.min(row[b.length()], max + 1);
+    }
+}
@@ -0,0 +1,327 @@
+package net.openalp.core;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Splits text into sentences and words without copying it. Word boundaries are kept as
+ * offsets into the text, in buffers that are reused from one scan to the next, and
+ * characters are classified with a single table lookup.
+ *
+ * Whitespace separates words, each symbol is a word of its own and each terminator is a
+ * word of its own that also ends the sentence, the same rules as Tokenizer.split.
+ *
+ * Word text is only made when asked for, folded to lower case as it is read. Each
+ * distinct folded word is kept in a table, so a word that has been seen before costs
+ * no allocation at all.
+ *
+ * A scanner is not thread safe, use one per thread.
+ */
+public class TextScanner {
+    public static final byte WORD = 0;
+    public static final byte WHITESPACE = 1;
+    public static final byte SYMBOL = 2;
+    public static final byte TERMINATOR = 3;
+
+    private static final byte[] CLASSES = new byte[128];
+    // The word table is emptied when it grows past this, so one huge document can't hold on to memory forever.
+    private static final int MAX_WORDS = 1 << 16;
+
+    static {
+        for(char c: new char[] {' ', '\n', '\r', '\t'}) {
+            CLASSES[c] = WHITESPACE;
+        }
+        for(char c: new char[] {',', '\'', '"', '(', ')'}) {
+            CLASSES[c] = SYMBOL;
+        }
+        for(char c: new char[] {'.', '!', '?'}) {
+            CLASSES[c] = TERMINATOR;
+        }
+    }
+
+    private CharSequence text;
+    private int[] wordStarts = new int[256];
+    private int[] wordEnds = new int[256];
+    private String[] words = new String[256];
+    private int wordCount;
+    // The index after the last word of each sentence.
+    private int[] sentenceEnds = new int[32];
+    private int sentenceCount;
+
+    private String[] table = new String[1024];
+    private int tableSize;
+
+    /**
+     * @param c A character.
+     * @return WORD, WHITESPACE, SYMBOL or TERMINATOR.
+     */
+    public static byte classify(char c) {
+        return c < CLASSES.length ? CLASSES[c] : WORD;
+    }
+
+    /**
+     * Scans a whole piece of text.
+     * @param text The text to scan. It must not change until the scanner is finished with.
+     */
+    public void scan(CharSequence text) {
+        scan(text, 0, text.length());
+    }
+
+    /**
+     * Scans part of a character array without copying it.
+     * @param text The characters to scan.
+     * @param start The index of the first character to scan.
+     * @param end The index after the last character to scan.
+     */
+    public void scan(char[] text, int start, int end) {
+        scan(CharBuffer.wrap(text), start, end);
+    }
+
+    /**
+     * Scans part of a piece of text. Offsets are relative to the start of the text, not to start.
+     * @param text The text to scan. It must not change until the scanner is finished with.
+     * @param start The index of the first character to scan.
+     * @param end The index after the last character to scan.
+     */
+    public void scan(CharSequence text, int start, int end) {
+        this.text = text;
+        wordCount = 0;
+        sentenceCount = 0;
+
+        int wordStart = start;
+        for(int i = start; i < end; i++) {
+            byte type = classify(text.charAt(i));
+
+            if(type == WORD) {
+                continue;
+            }
+
+            if(i > wordStart) {
+                addWord(wordStart, i);
+            }
+            wordStart = i + 1;
+
+            if(type != WHITESPACE) {
+                addWord(i, i + 1);
+                if(type == TERMINATOR) {
+                    endSentence();
+                }
+            }
+        }
+
+        if(end > wordStart) {
+            addWord(wordStart, end);
+        }
+        endSentence();
+    }
+
+    /**
+     * Lets go of the last text scanned, keeping the buffers and word table for the next scan.
+     */
+    public void clear() {
+        text = null;
+        wordCount = 0;
+        sentenceCount = 0;
+    }
+
+    private void addWord(int start, int end) {
+        if(wordCount == wordStarts.length) {
+            wordStarts = grow(wordStarts);
+            wordEnds = grow(wordEnds);
+
+            String[] grown = new String[words.length * 2];
+            System.arraycopy(words, 0, grown, 0, words.length);
+            words = grown;
+        }
+
+        wordStarts[wordCount] = start;
+        wordEnds[wordCount] = end;
+        words[wordCount] = null;
+        wordCount++;
+    }
+
+    private void endSentence() {
+        if(wordCount == (sentenceCount == 0 ? 0 : sentenceEnds[sentenceCount - 1])) {
+            return;
+        }
+
+        if(sentenceCount == sentenceEnds.length) {
+            sentenceEnds = grow(sentenceEnds);
+        }
+        sentenceEnds[sentenceCount++] = wordCount;
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    public int getWordStart(int word) {
+        return wordStarts[word];
+    }
+
+    public int getWordEnd(int word) {
+        return wordEnds[word];
+    }
+
+    public int getSentenceCount() {
+        return sentenceCount;
+    }
+
+    /**
+     * @param sentence The index of a sentence.
+     * @return The index of the first word in the sentence.
+     */
+    public int getFirstWord(int sentence) {
+        return sentence == 0 ? 0 : sentenceEnds[sentence - 1];
+    }
+
+    /**
+     * @param sentence The index of a sentence.
+     * @return The index after the last word in the sentence.
+     */
+    public int getEndWord(int sentence) {
+        return sentenceEnds[sentence];
+    }
+
+    /**
+     * The text of a word folded to lower case. Words that fold to the same text always
+     * return the same String, and only the first costs an allocation.
+     * @param word The index of a word.
+     * @return The folded text of the word.
+     */
+    public String getWord(int word) {
+        String folded = words[word];
+        if(folded == null) {
+            folded = words[word] = fold(wordStarts[word], wordEnds[word]);
+        }
+        return folded;
+    }
+
+    /**
+     * @return The folded text of every word scanned, in order. Only valid until the next scan.
+     */
+    public List<String> getWords() {
+        for(int i = 0; i < wordCount; i++) {
+            getWord(i);
+        }
+        return Arrays.asList(words).subList(0, wordCount);
+    }
+
+    /**
+     * Folds text to lower case the same way words are folded as they are scanned.
+     * @param text The text to fold.
+     * @return The folded text.
+     */
+    public static String fold(CharSequence text) {
+        char[] chars = new char[text.length()];
+        for(int i = 0; i < chars.length; i++) {
+            chars[i] = fold(text.charAt(i));
+        }
+        return new String(chars);
+    }
+
+    private static char fold(char c) {
+        if(c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char)(c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * Finds the folded text of part of the scanned text in the word table, adding it if it is new.
+     */
+    private String fold(int start, int end) {
+        int hash = 0;
+        for(int i = start; i < end; i++) {
+            hash = 31 * hash + fold(text.charAt(i));
+        }
+
+        int mask = table.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        String word;
+
+        while((word = table[slot]) != null) {
+            if(equalsFolded(word, start, end)) {
+                return word;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        char[] chars = new char[end - start];
+        for(int i = start; i < end; i++) {
+            chars[i - start] = fold(text.charAt(i));
+        }
+        word = new String(chars);
+
+        if(tableSize >= MAX_WORDS) {
+            Arrays.fill(table, null);
+            tableSize = 0;
+        } else if(tableSize >= table.length / 2) {
+            rehash();
+        }
+        insert(word);
+
+        return word;
+    }
+
+    private boolean equalsFolded(String word, int start, int end) {
+        if(word.length() != end - start) {
+            return false;
+        }
+
+        for(int i = start; i < end; i++) {
+            if(word.charAt(i - start) != fold(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(String word) {
+        // String.hashCode is the same hash fold uses, so words land in the same slot they are looked up in.
+        int hash = word.hashCode();
+        int mask = table.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+
+        while(table[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = word;
+        tableSize++;
+    }
+
+    private void rehash() {
+        String[] old = table;
+        table = new String[old.length * 2];
+        tableSize = 0;
+
+        for(String word: old) {
+            if(word != null) {
+                insert(word);
+            }
+        }
+    }
+}
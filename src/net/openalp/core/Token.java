@@ -31,36 +31,62 @@
 
 package net.openalp.core;
 
+import net.openalp.graph.KeyedFilter;
 import net.openalp.graph.NodeFilter;
 import net.openalp.graph.Node;
 
-public class Token implements NodeFilter {
-	private String value;
-	private String type;
-    private boolean firstPerson, secondPerson, thirdPerson;
-    private boolean pastTense, presentTense, futureTense;
+public class Token implements KeyedFilter {
+    // Person and tense flags, the same masks the define command takes shifted into a single int.
+    public static final int FIRST_PERSON = 32;
+    public static final int SECOND_PERSON = 16;
+    public static final int THIRD_PERSON = 8;
+    public static final int PAST_TENSE = 4;
+    public static final int PRESENT_TENSE = 2;
+    public static final int FUTURE_TENSE = 1;
+    public static final int FLAG_BITS = 6;
+
+	private final String value;
+	private final String type;
+	private final int signature;
 
     //----------------------------------------
 	// Constructors
 	//----------------------------------------
 
 	public Token(String value) {
-		this.value = value;
-		this.type = "UNDEF";
+		this(value, "UNDEF", 0, 0);
 	}
 
 	public Token(String word, String type, boolean firstPerson, boolean secondPerson, boolean thirdPerson,
 	                                       boolean pastTense, boolean presentTense, boolean futureTense) {
-		this.type = type;
-		this.value = word;
-		this.firstPerson = firstPerson;
-		this.secondPerson = secondPerson;
-		this.thirdPerson = thirdPerson;
-		this.pastTense = pastTense;
-		this.presentTense = presentTense;
-		this.futureTense = futureTense;
+		this(word, type, (firstPerson ? 4 : 0) | (secondPerson ? 2 : 0) | (thirdPerson ? 1 : 0),
+		                 (pastTense ? 4 : 0) | (presentTense ? 2 : 0) | (futureTense ? 1 : 0));
     }
 
+    /**
+     * Class constructor.
+     * @param word The word this token was made from.
+     * @param type The part of speech.
+     * @param personMask 4 for first person, 2 for second person and 1 for third person.
+     * @param tenseMask 4 for past tense, 2 for present tense and 1 for future tense.
+     */
+	public Token(String word, String type, int personMask, int tenseMask) {
+		this.value = word;
+		this.type = type;
+		this.signature = signature(type, ((personMask & 7) << 3) | (tenseMask & 7));
+	}
+
+    /**
+     * Packs a part of speech and its flags into a single int, two tokens or nodes with
+     * the same signature are grammatically identical.
+     * @param type The part of speech.
+     * @param flags The person and tense flags.
+     * @return The signature.
+     */
+	public static int signature(String type, int flags) {
+		return (TokenTypes.getId(type) << FLAG_BITS) | flags;
+	}
+
 	//----------------------------------------
 	// Simple getters
 	//----------------------------------------
@@ -70,12 +96,12 @@ public class Token implements NodeFilter {
 		s.append("Token: ").append(value).append("\n");
 		s.append("  Type: ").append(type).append("\n");
 		s.append("  Flags: ");
-		if(firstPerson) { s.append("1st "); }
-		if(secondPerson) { s.append("2nd "); }
-		if(thirdPerson) { s.append("3rd "); }
-		if(pastTense) { s.append("PAST "); }
-		if(presentTense) { s.append("PRESENT "); }
-		if(futureTense) { s.append("FUTURE "); }
+		if(isFirstPerson()) { s.append("1st "); }
+		if(isSecondPerson()) { s.append("2nd "); }
+		if(isThirdPerson()) { s.append("3rd "); }
+		if(isPastTense()) { s.append("PAST "); }
+		if(isPresentTense()) { s.append("PRESENT "); }
+		if(isFutureTense()) { s.append("FUTURE "); }
 		s.append("\n");
 		return s.toString();
 	}
@@ -88,28 +114,43 @@ public class Token implements NodeFilter {
 		return value;
 	}
 
+    /**
+     * @return The part of speech and flags packed into an int.
+     * @see #signature(String, int)
+     */
+    public int getSignature() {
+        return signature;
+    }
+
+    /**
+     * @return The person and tense flags.
+     */
+    public int getFlags() {
+        return signature & ((1 << FLAG_BITS) - 1);
+    }
+
     public boolean isFirstPerson() {
-        return firstPerson;
+        return (signature & FIRST_PERSON) != 0;
     }
 
     public boolean isSecondPerson() {
-        return secondPerson;
+        return (signature & SECOND_PERSON) != 0;
     }
 
     public boolean isThirdPerson() {
-        return thirdPerson;
+        return (signature & THIRD_PERSON) != 0;
     }
 
     public boolean isPastTense() {
-        return pastTense;
+        return (signature & PAST_TENSE) != 0;
     }
 
     public boolean isPresentTense() {
-        return presentTense;
+        return (signature & PRESENT_TENSE) != 0;
     }
 
     public boolean isFutureTense() {
-        return futureTense;
+        return (signature & FUTURE_TENSE) != 0;
     }
 
     public boolean isTerminator() {
@@ -120,4 +161,15 @@ public class Token implements NodeFilter {
     public boolean matches(Node target) {
         return ((GrammarNode)target).matches(this);
     }
+
+    /**
+     * A token only matches nodes with its own signature.
+     */
+    public int getKeyCount() {
+        return 1;
+    }
+
+    public int getKey(int index) {
+        return signature;
+    }
 }
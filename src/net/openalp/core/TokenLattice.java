@@ -0,0 +1,193 @@
+package net.openalp.core;
+
+import java.util.Arrays;
+import java.util.List;
+import net.openalp.graph.KeyedFilter;
+import net.openalp.graph.Node;
+import net.openalp.graph.NodeFilter;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Every way a sentence could be tokenized, kept as the candidate tokens for each word
+ * rather than as every combination of them. A sentence of n words with two meanings
+ * each has 2^n readings, but its lattice only holds 2n tokens.
+ *
+ * Each position acts as a NodeFilter matching a node if any of its candidates do, so
+ * the grammar can be searched for the best reading in a single walk, and the tokens
+ * along the path found tell us which reading it was.
+ */
+public class TokenLattice {
+    private final Position[] positions;
+
+    /**
+     * Class constructor.
+     * @param candidates The candidate tokens for each word, in order. Every word needs at least one.
+     */
+    public TokenLattice(List<Token[]> candidates) {
+        positions = new Position[candidates.size()];
+
+        for(int i = 0; i < positions.length; i++) {
+            positions[i] = new Position(distinct(candidates.get(i)));
+        }
+    }
+
+    /**
+     * Drops candidates that would match exactly the same nodes as an earlier one.
+     */
+    private static Token[] distinct(Token[] tokens) {
+        Token[] result = new Token[tokens.length];
+        int count = 0;
+
+        next:
+        for(Token token: tokens) {
+            for(int i = 0; i < count; i++) {
+                if(result[i].getSignature() == token.getSignature()) {
+                    continue next;
+                }
+            }
+            result[count++] = token;
+        }
+
+        if(count == tokens.length) {
+            return result;
+        }
+
+        Token[] trimmed = new Token[count];
+        System.arraycopy(result, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    /**
+     * @return The number of words in the sentence.
+     */
+    public int size() {
+        return positions.length;
+    }
+
+    /**
+     * @param position The index of a word.
+     * @return The tokens the word could be. The array must not be modified.
+     */
+    public Token[] getCandidates(int position) {
+        return positions[position].candidates;
+    }
+
+    /**
+     * @return True if any word has more than one candidate.
+     */
+    public boolean isAmbiguous() {
+        for(Position position: positions) {
+            if(position.candidates.length > 1) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return The number of different sentences the lattice holds, Long.MAX_VALUE if there are more than that.
+     */
+    public long getReadings() {
+        long readings = 1;
+
+        for(Position position: positions) {
+            if(readings > Long.MAX_VALUE / position.candidates.length) {
+                return Long.MAX_VALUE;
+            }
+            readings *= position.candidates.length;
+        }
+
+        return readings;
+    }
+
+    /**
+     * @return A filter for each word that matches any node one of its candidates would match.
+     */
+    public List<NodeFilter> getFilters() {
+        return Arrays.<NodeFilter>asList(positions);
+    }
+
+    /**
+     * @return The sentence made of the first candidate of every word, the most common reading.
+     */
+    public Sentence getFirstSentence() {
+        Sentence sentence = new Sentence();
+
+        for(Position position: positions) {
+            sentence.add(position.candidates[0]);
+        }
+
+        return sentence;
+    }
+
+    /**
+     * Picks the reading that a path through the grammar followed. Words past the end of the path
+     * take their first candidate.
+     * @param path A path found with the lattices filters, starting at the node before the first word.
+     * @return The tokens that matched each node along the path.
+     */
+    public Sentence resolve(List<Node> path) {
+        Sentence sentence = new Sentence();
+
+        for(int i = 0; i < positions.length; i++) {
+            Token[] candidates = positions[i].candidates;
+            Token chosen = candidates[0];
+
+            if(i + 1 < path.size()) {
+                Node node = path.get(i + 1);
+                for(Token candidate: candidates) {
+                    if(candidate.matches(node)) {
+                        chosen = candidate;
+                        break;
+                    }
+                }
+            }
+
+            sentence.add(chosen);
+        }
+
+        return sentence;
+    }
+
+    private static class Position implements KeyedFilter {
+        private final Token[] candidates;
+
+        public Position(Token[] candidates) {
+            this.candidates = candidates;
+        }
+
+        public boolean matches(Node target) {
+            for(Token candidate: candidates) {
+                if(candidate.matches(target)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        public int getKeyCount() {
+            return candidates.length;
+        }
+
+        public int getKey(int index) {
+            return candidates[index].getSignature();
+        }
+    }
+}
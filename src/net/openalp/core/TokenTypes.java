@@ -0,0 +1,65 @@
+package net.openalp.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Interns parts of speech (NOUN, VERB, ...) as small integers so tokens and grammar
+ * nodes can be compared without comparing strings. The ids only live as long as the
+ * program, anything saved to disk should use the names.
+ */
+public final class TokenTypes {
+    private static final Map<String, Integer> ids = new HashMap<String, Integer>();
+    private static final List<String> names = new ArrayList<String>();
+
+    static {
+        // A missing part of speech is always id 0.
+        names.add(null);
+        ids.put(null, 0);
+    }
+
+    private TokenTypes() {}
+
+    /**
+     * Returns the id for a part of speech, assigning a new one the first time it is seen.
+     * @param type The name of the part of speech.
+     * @return Its id.
+     */
+    public static synchronized int getId(String type) {
+        Integer id = ids.get(type);
+
+        if(id == null) {
+            id = names.size();
+            ids.put(type, id);
+            names.add(type);
+        }
+
+        return id;
+    }
+
+    /**
+     * @param id The id of a part of speech.
+     * @return The name of the part of speech.
+     */
+    public static synchronized String getName(int id) {
+        return names.get(id);
+    }
+}
@@ -9,8 +9,10 @@ import java.util.List;
  */
 public class TokenizedSentence {
     private PossibleSentences sentences;
+    private TokenLattice lattice;
     private List<TokenizingError> errors = new LinkedList<TokenizingError>();
     private int start, end;
+    private long offset;
 
     public TokenizedSentence() {
     }
@@ -36,6 +38,18 @@ public class TokenizedSentence {
         this.sentences = sentences;
     }
 
+    /**
+     * Getter
+     * @return Every reading of the sentence, or null if it was built from a list of possible sentences.
+     */
+    public TokenLattice getLattice() {
+        return lattice;
+    }
+
+    public void setLattice(TokenLattice lattice) {
+        this.lattice = lattice;
+    }
+
     public int getEnd() {
         return end;
     }
@@ -51,4 +65,18 @@ public class TokenizedSentence {
     public void setStart(int start) {
         this.start = start;
     }
+
+    /**
+     * The position in the source that start, end and error positions count from. Always zero
+     * for text tokenized in memory, for a stream it is where the current buffer of text began.
+     * @return The offset to add to a position to get its absolute position in the source.
+     * @see SentenceIterator
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
 }
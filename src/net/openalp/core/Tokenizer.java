@@ -1,7 +1,18 @@
 package net.openalp.core;
 
-import java.util.LinkedList;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 /**
@@ -30,22 +41,30 @@ public class Tokenizer {
     private char[] terminators = {'.', '!', '?'};
     private char[] symbols = {',', '\'', '"', '(', ')'};
     private char[] whitespace = {' ', '\n', '\r', '\t'};
-    private LexiconDAO lexicon;
+    private static final Token UNDEF = new Token("UNDEF");
+    private static final int MAX_SUGGESTIONS = 5;
+    // Scanners keep their buffers from one call to the next, so each thread needs its own.
+    private static final ThreadLocal<TextScanner> scanners = new ThreadLocal<TextScanner>() {
+        protected TextScanner initialValue() {
+            return new TextScanner();
+        }
+    };
+    private Lexicon lexicon;
 
     public  Tokenizer() { };
     /**
      * Class constructor.
      * @param lex The lexicon to pull words from.
      */
-    public Tokenizer(LexiconDAO lex) {
+    public Tokenizer(Lexicon lex) {
         lexicon = lex;
     }
 
-    public LexiconDAO getLexicon() {
+    public Lexicon getLexicon() {
         return lexicon;
     }
 
-    public void setLexicon(LexiconDAO lexicon) {
+    public void setLexicon(Lexicon lexicon) {
         this.lexicon = lexicon;
     }
 
@@ -55,55 +74,271 @@ public class Tokenizer {
      * </p>
      *
      * <p>
-     * If multiple tokens match a given word then multiple lists of tokens will be returned.
+     * If multiple tokens match a given word they are all kept in the sentences lattice.
      * </p>
      *
      * @param text  The text to convert.
      * @return  A Tokenizing result for each sentence in the text.
      */
     public List<TokenizedSentence> tokenize(String text) {
-		return tokenize(split(text));
+		return tokenize((CharSequence)text);
 	}
 
+    /**
+     * Tokenizes text without copying it. Words are found as offsets into the text and folded
+     * to lower case as they are looked up, so there is no need to lower case the text first.
+     * @param text  The text to convert.
+     * @return  A Tokenizing result for each sentence in the text.
+     * @see TextScanner
+     */
+    public List<TokenizedSentence> tokenize(CharSequence text) {
+        return tokenize(text, 0, text.length());
+    }
+
+    /**
+     * Tokenizes part of a character array without copying it.
+     * @param text  The characters to convert.
+     * @param start The index of the first character to convert.
+     * @param end The index after the last character to convert.
+     * @return  A Tokenizing result for each sentence, with offsets into the whole array.
+     */
+    public List<TokenizedSentence> tokenize(char[] text, int start, int end) {
+        return tokenize(CharBuffer.wrap(text), start, end);
+    }
+
+    /**
+     * Tokenizes part of a piece of text without copying it.
+     * @param text  The text to convert.
+     * @param start The index of the first character to convert.
+     * @param end The index after the last character to convert.
+     * @return  A Tokenizing result for each sentence, with offsets into the whole text.
+     */
+    public List<TokenizedSentence> tokenize(CharSequence text, int start, int end) {
+        TextScanner scanner = scanners.get();
+        scanner.scan(text, start, end);
+
+        try {
+            List<String> words = scanner.getWords();
+            String[] phrases = findPhrases(scanner);
+            List<String> keys = words;
+
+            if(phrases != null) {
+                keys = new ArrayList<String>(words);
+                for(String phrase: phrases) {
+                    if(phrase != null) {
+                        keys.add(phrase);
+                    }
+                }
+            }
+
+            Map<String, List<Token>> lookup = lookupWords(keys);
+            List<TokenizedSentence> result = new ArrayList<TokenizedSentence>(scanner.getSentenceCount());
+
+            for(int i = 0; i < scanner.getSentenceCount(); i++) {
+                int first = scanner.getFirstWord(i);
+                int last = scanner.getEndWord(i);
+
+                TokenizedSentence sentence = new TokenizedSentence();
+                sentence.setStart(scanner.getWordStart(first));
+                sentence.setEnd(scanner.getWordEnd(last - 1));
+
+                List<Token[]> candidates = new ArrayList<Token[]>(last - first);
+                for(int word = first; word < last; word++) {
+                    String phrase = phrases == null ? null : phrases[word];
+                    List<Token> tokens = phrase == null ? null : lookup.get(phrase);
+
+                    if(tokens != null && tokens.size() > 0) {
+                        int phraseEnd = word + PhraseIndex.countWords(phrase) - 1;
+                        candidates.add(getCandidates(sentence, phrase, scanner.getWordStart(word), scanner.getWordEnd(phraseEnd), lookup));
+                        word = phraseEnd;
+                    } else {
+                        candidates.add(getCandidates(sentence, scanner.getWord(word), scanner.getWordStart(word), scanner.getWordEnd(word), lookup));
+                    }
+                }
+
+                setLattice(sentence, candidates);
+                result.add(sentence);
+            }
+
+            return result;
+        } finally {
+            scanner.clear();
+        }
+    }
+
+    /**
+     * Finds the longest phrase starting at each word, skipping the words inside each phrase
+     * found, so the text is only walked once.
+     * @param scanner The scanned text.
+     * @return The lexicon entry for the phrase starting at each word, null where there is none.
+     *         Null if there are no phrases at all.
+     */
+    private String[] findPhrases(TextScanner scanner) {
+        PhraseIndex index = lexicon.getPhrases();
+        if(index == null || index.size() == 0) {
+            return null;
+        }
+
+        List<String> words = scanner.getWords();
+        String[] phrases = null;
+
+        for(int i = 0; i < scanner.getSentenceCount(); i++) {
+            int last = scanner.getEndWord(i);
+
+            for(int word = scanner.getFirstWord(i); word < last; word++) {
+                int length = index.match(words, word, last);
+                if(length == 0) {
+                    continue;
+                }
+
+                String phrase = index.getPhrase(words, word, length);
+                if(phrase != null) {
+                    if(phrases == null) {
+                        phrases = new String[words.size()];
+                    }
+                    phrases[word] = phrase;
+                    word += length - 1;
+                }
+            }
+        }
+
+        return phrases;
+    }
+
+    /**
+     * Tokenizes a stream of text one sentence at a time, reading only as much as it needs.
+     * @param source The text to convert, closed once it has all been read.
+     * @return The tokenized sentences, in order.
+     */
+    public SentenceIterator iterate(Reader source) {
+        return new SentenceIterator(this, source);
+    }
+
+    /**
+     * Tokenizes a stream of bytes one sentence at a time. Malformed characters are replaced rather than stopping the stream.
+     * @param source The text to convert, closed once it has all been read.
+     * @param charset The encoding of the text.
+     * @return The tokenized sentences, in order.
+     */
+    public SentenceIterator iterate(ReadableByteChannel source, Charset charset) {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        return new SentenceIterator(this, Channels.newReader(source, decoder, -1));
+    }
+
+    /**
+     * Tokenizes a whole document, looking up every distinct word in the lexicon in one go.
+     * @param sentences The sentences to tokenize.
+     * @return  A Tokenizing result for each sentence.
+     */
     public List<TokenizedSentence> tokenize(List<UntokenizedSentence> sentences) {
         List<TokenizedSentence> result = new Vector<TokenizedSentence>();
+        Map<String, List<Token>> lookup = lookup(sentences);
 
         for (UntokenizedSentence untokenizedSentence: sentences) {
             System.out.println("New Sentence...");
-            result.add(tokenize(untokenizedSentence));
+            result.add(tokenize(untokenizedSentence, lookup));
         }
 
 		return result;
     }
 
     public TokenizedSentence tokenize(UntokenizedSentence untokenizedSentence) {
+        return tokenize(untokenizedSentence, lookup(Collections.singletonList(untokenizedSentence)));
+    }
+
+    /**
+     * Fetches the tokens for every word in the given sentences with a single bulk lexicon lookup.
+     * @param sentences The sentences to look up.
+     * @return The tokens for each distinct word.
+     */
+    private Map<String, List<Token>> lookup(List<UntokenizedSentence> sentences) {
+        List<String> words = new ArrayList<String>();
+
+        for (UntokenizedSentence untokenizedSentence: sentences) {
+            for (Word word : untokenizedSentence) {
+                words.add(word.getText());
+            }
+        }
+
+        return lookupWords(words);
+    }
+
+    /**
+     * Looks up every word at once. If the bulk lookup fails the words are looked up one at a
+     * time, so one bad query does not make every word in the text look unknown.
+     * @param words The words to look up.
+     * @return The tokens for each distinct word.
+     * @throws IllegalStateException If a word could not be looked up at all.
+     */
+    private Map<String, List<Token>> lookupWords(Collection<String> words) {
+        Map<String, List<Token>> found = lexicon.getAll(words);
+        if(found != null) {
+            return found;
+        }
+
+        found = new HashMap<String, List<Token>>();
+        for(String word: words) {
+            if(found.containsKey(word)) {
+                continue;
+            }
+
+            List<Token> tokens = lexicon.get(word);
+            if(tokens == null) {
+                throw new IllegalStateException("Could not look up '" + word + "' in the lexicon.");
+            }
+            found.put(word, tokens);
+        }
+
+        return found;
+    }
+
+    private TokenizedSentence tokenize(UntokenizedSentence untokenizedSentence, Map<String, List<Token>> lookup) {
         TokenizedSentence result = new TokenizedSentence();
 
         result.setStart(untokenizedSentence.get(0).getStart());
         result.setEnd(untokenizedSentence.get(untokenizedSentence.size() - 1).getEnd());
 
-        Sentence tokenizedSentence = new Sentence();
+        List<Token[]> candidates = new ArrayList<Token[]>(untokenizedSentence.size());
 
         for (Word word : untokenizedSentence) {
             System.out.print(word.getText() + " ");
-            LinkedList<Token> tokens = lexicon.get(word.getText());
+            candidates.add(getCandidates(result, word.getText(), word.getStart(), word.getEnd(), lookup));
+        }
 
-            if(tokens.size() == 0) {
-                result.addError(new TokenizingError(word.getStart(), word.getEnd()));
-               // System.out.println("Could not find '" + word + "' in lexicon.");
-                tokenizedSentence.add(new Token("UNDEF"));
-                continue;
-            }
+        setLattice(result, candidates);
+
+        return result;
+    }
 
-            tokenizedSentence.add(tokens.get(0));
+    /**
+     * Finds every token a word could be, or UNDEF and an error if the word is unknown.
+     */
+    private Token[] getCandidates(TokenizedSentence result, String word, int start, int end, Map<String, List<Token>> lookup) {
+        List<Token> tokens = lookup.get(word);
+
+        if(tokens == null || tokens.size() == 0) {
+            result.addError(new TokenizingError(start, end, word, lexicon, MAX_SUGGESTIONS));
+           // System.out.println("Could not find '" + word + "' in lexicon.");
+            return new Token[] {UNDEF};
         }
 
-        PossibleSentences possibleSentences = new PossibleSentences();
-        possibleSentences.add(tokenizedSentence);
+        return tokens.toArray(new Token[tokens.size()]);
+    }
 
-        result.setSentences(possibleSentences);
+    /**
+     * Stores every reading of a sentence as a lattice. The most common reading is also
+     * kept as its only possible sentence, for code that does not understand lattices.
+     */
+    private void setLattice(TokenizedSentence result, List<Token[]> candidates) {
+        TokenLattice lattice = new TokenLattice(candidates);
+        result.setLattice(lattice);
 
-        return result;
+        PossibleSentences possibleSentences = new PossibleSentences();
+        possibleSentences.add(lattice.getFirstSentence());
+        result.setSentences(possibleSentences);
     }
 
      private boolean isWhitespace(char c) {
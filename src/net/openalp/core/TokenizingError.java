@@ -1,16 +1,59 @@
 package net.openalp.core;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
- * An error while parsing.
+ * An error while parsing. Unknown words carry the closest words in the lexicon as suggestions.
  *
  * @author Adam Scarr <scarr.adam@gmail.com>
  */
 public class TokenizingError {
     private int start, end;
+    private List<String> suggestions;
+    // Where the suggestions come from, until they are first asked for.
+    private String word;
+    private Lexicon lexicon;
+    private int limit;
 
     public TokenizingError(int start, int end) {
+        this(start, end, Collections.<String>emptyList());
+    }
+
+    /**
+     * Class constructor.
+     * @param start The index of the first character of the unknown word.
+     * @param end The index after the last character of the unknown word.
+     * @param suggestions The words it may have been meant to be, closest first.
+     */
+    public TokenizingError(int start, int end, List<String> suggestions) {
         this.start = start;
         this.end = end;
+        this.suggestions = suggestions;
+    }
+
+    /**
+     * Class constructor. Suggestions are only looked for the first time they are asked for,
+     * as most errors are never shown to anyone and the search is not cheap.
+     * @param start The index of the first character of the unknown word.
+     * @param end The index after the last character of the unknown word.
+     * @param word The unknown word.
+     * @param lexicon The lexicon to suggest words from.
+     * @param limit The most suggestions to give.
+     */
+    public TokenizingError(int start, int end, String word, Lexicon lexicon, int limit) {
+        this.start = start;
+        this.end = end;
+        this.word = word;
+        this.lexicon = lexicon;
+        this.limit = limit;
+    }
+
+    /**
+     * @return The unknown word, or null if it was not given.
+     */
+    public String getWord() {
+        return word;
     }
 
     public int getLength() {
@@ -32,4 +75,15 @@ public class TokenizingError {
     public void setStart(int start) {
         this.start = start;
     }
+
+    /**
+     * @return The words the unknown word may have been meant to be, closest first. Empty if there are none.
+     */
+    public synchronized List<String> getSuggestions() {
+        if(suggestions == null) {
+            suggestions = lexicon.suggest(word, limit);
+            lexicon = null;
+        }
+        return suggestions;
+    }
 }
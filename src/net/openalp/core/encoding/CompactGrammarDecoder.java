@@ -0,0 +1,100 @@
+package net.openalp.core.encoding;
+
+import net.openalp.core.Grammar;
+import net.openalp.core.GrammarEdge;
+import net.openalp.core.GrammarNode;
+import net.openalp.core.Lexicon;
+import net.openalp.core.Token;
+import net.openalp.graph.CompactGraph;
+import net.openalp.graph.Edge;
+import net.openalp.graph.Graph;
+import net.openalp.graph.Node;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads a grammar saved by CompactGrammarEncoder. The file is read into a CompactGraph,
+ * which is then turned into GrammarNodes and GrammarEdges.
+ */
+public class CompactGrammarDecoder {
+    private Lexicon lexicon;
+
+    /**
+     * @param lexicon The lexicon loaded grammars look words up in.
+     */
+    public CompactGrammarDecoder(Lexicon lexicon) {
+        this.lexicon = lexicon;
+    }
+
+    /**
+     * @param filename The file to load.
+     * @return The grammar, or null if the file could not be read.
+     */
+    public Grammar load(String filename) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)));
+            try {
+                return read(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Grammar read(DataInputStream in) throws IOException {
+        if(in.readInt() != CompactGrammarEncoder.MAGIC) {
+            throw new IOException("Not a compact grammar");
+        }
+        if(in.readInt() != CompactGrammarEncoder.VERSION) {
+            throw new IOException("Unknown compact grammar version");
+        }
+
+        int totalSentences = in.readInt();
+        int start = in.readInt();
+
+        final Map<Integer, String> types = new HashMap<Integer, String>();
+        int typeCount = in.readInt();
+        for(int i = 0; i < typeCount; i++) {
+            int type = in.readInt();
+            types.put(type, in.readBoolean() ? in.readUTF() : null);
+        }
+
+        CompactGraph compact = CompactGraph.read(in);
+        if(start < 0 || start >= compact.getNodeCount()) {
+            throw new IOException("Missing start node");
+        }
+        for(int n = 0; n < compact.getNodeCount(); n++) {
+            if(!types.containsKey(compact.getKey(n) >>> Token.FLAG_BITS)) {
+                throw new IOException("Node " + n + " has an unknown part of speech");
+            }
+        }
+
+        final Grammar grammar = new Grammar(lexicon);
+        Graph graph = compact.toGraph(new CompactGraph.Factory() {
+            public Node createNode(CompactGraph graph, int node) {
+                int key = graph.getKey(node);
+                String type = types.get(key >>> Token.FLAG_BITS);
+                int flags = key & ((1 << Token.FLAG_BITS) - 1);
+                return new GrammarNode(new Token(type, type, flags >> 3, flags & 7));
+            }
+
+            public Edge createEdge(CompactGraph graph, int edge, Node src, Node dest) {
+                GrammarEdge created = new GrammarEdge(src, dest, graph.isDirected(edge), grammar);
+                created.setUsageCount(graph.getUsageCount(edge));
+                return created;
+            }
+        });
+
+        grammar.setGraph(graph);
+        grammar.setStart(graph.getNode(start));
+        grammar.setTotalSentences(totalSentences);
+        return grammar;
+    }
+}
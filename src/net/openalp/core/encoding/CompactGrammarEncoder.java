@@ -0,0 +1,90 @@
+package net.openalp.core.encoding;
+
+import net.openalp.core.Grammar;
+import net.openalp.core.Token;
+import net.openalp.core.TokenTypes;
+import net.openalp.graph.CompactGraph;
+import net.openalp.graph.Graph;
+import net.openalp.graph.Node;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.TreeSet;
+
+/**
+ * Saves a grammar as a CompactGraph, a few ints per node and edge, instead of the XML
+ * GrammarEncoder writes. Node keys hold part of speech ids that only last as long as the
+ * program, so the names of the ones used are saved with them.
+ *
+ * @see CompactGrammarDecoder
+ */
+public class CompactGrammarEncoder {
+    /**
+     * Filenames ending in this are saved and loaded in the compact format.
+     */
+    public static final String EXTENSION = ".oagc";
+    static final int MAGIC = 0x4f414743;
+    static final int VERSION = 1;
+
+    private Grammar grammar;
+
+    public CompactGrammarEncoder(Grammar grammar) {
+        this.grammar = grammar;
+    }
+
+    public boolean save(String filename) {
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+            try {
+                write(out);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        Graph graph = grammar.getGraph();
+        CompactGraph compact;
+        int start = -1;
+
+        // Training holds the same lock, so the copy is of a graph that is not changing.
+        synchronized(graph.getNodes()) {
+            compact = new CompactGraph(graph);
+            int id = 0;
+            for(Node node: graph.getNodes()) {
+                if(node == grammar.getStart()) {
+                    start = id;
+                }
+                id++;
+            }
+        }
+
+        TreeSet<Integer> types = new TreeSet<Integer>();
+        for(int n = 0; n < compact.getNodeCount(); n++) {
+            types.add(compact.getKey(n) >>> Token.FLAG_BITS);
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(grammar.getTotalSentences());
+        out.writeInt(start);
+
+        out.writeInt(types.size());
+        for(int type: types) {
+            String name = TokenTypes.getName(type);
+            out.writeInt(type);
+            out.writeBoolean(name != null);
+            if(name != null) {
+                out.writeUTF(name);
+            }
+        }
+
+        compact.write(out);
+    }
+}
@@ -83,7 +83,7 @@ public class ModificationObserver implements DocumentListener, Runnable {
             }
 
             for(TokenizingError error: sentenceResult.getTokenizingResult().getErrors()) {
-                editor.markBadSpelling(error.getStart(), error.getEnd());
+                editor.markBadSpelling(error);
             }
         }
     }
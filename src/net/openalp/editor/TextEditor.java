@@ -6,10 +6,14 @@ import java.util.logging.Logger;
 import javax.swing.*;
 import java.awt.Dimension;
 import java.awt.EventQueue;
+import java.awt.event.MouseEvent;
+import java.util.List;
 import javax.swing.text.BadLocationException;
+import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.Style;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.StyledDocument;
+import net.openalp.core.TokenizingError;
 
 /**
  *
@@ -17,6 +21,8 @@ import javax.swing.text.StyledDocument;
  */
 
 public class TextEditor extends JScrollPane {
+    // Character attribute holding the spelling suggestions for a misspelt word.
+    private static final Object SPELLING_ERROR = "SpellingError";
     private JTextPane textPane;
     private StyledDocument doc;
     private Style badGrammar;
@@ -27,7 +33,14 @@ public class TextEditor extends JScrollPane {
     public TextEditor() {
         setMinimumSize(new Dimension(640, 480));
         setPreferredSize(new Dimension(800,600));
-        textPane = new JTextPane();
+        textPane = new JTextPane() {
+            // viewToModel2D needs Java 9, and we still build for 7.
+            @SuppressWarnings("deprecation")
+            public String getToolTipText(MouseEvent e) {
+                return getSuggestionText(viewToModel(e.getPoint()));
+            }
+        };
+        ToolTipManager.sharedInstance().registerComponent(textPane);
         doc = textPane.getStyledDocument();
 
         normal = doc.addStyle("Normal", null);
@@ -86,6 +99,46 @@ public class TextEditor extends JScrollPane {
         });
     }
 
+    /**
+     * Marks a misspelt word, showing the suggested corrections when the mouse hovers over it.
+     * The corrections are only looked for then, not when the word is marked.
+     * @param error The error for the word.
+     */
+    public void markBadSpelling(TokenizingError error) {
+        final int start = error.getStart();
+        final int length = error.getLength();
+        final SimpleAttributeSet attributes = new SimpleAttributeSet(badSpelling);
+        attributes.addAttribute(SPELLING_ERROR, error);
+
+        EventQueue.invokeLater(new Runnable() {
+            public void run() {
+                doc.setCharacterAttributes(start, length, attributes, true);
+            }
+        });
+    }
+
+    private String getSuggestionText(int position) {
+        if(position < 0) {
+            return null;
+        }
+
+        TokenizingError error = (TokenizingError)doc.getCharacterElement(position).getAttributes().getAttribute(SPELLING_ERROR);
+        if(error == null) {
+            return null;
+        }
+
+        List<String> suggestions = error.getSuggestions();
+        if(suggestions.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder text = new StringBuilder("Did you mean: ");
+        for(int i = 0; i < suggestions.size(); i++) {
+            text.append(i == 0 ? "" : ", ").append(suggestions.get(i));
+        }
+        return text.toString();
+    }
+
     void markNormal(final int start, int end) {
         final int length = end - start;
         System.out.println("Bad Grammar");
@@ -0,0 +1,439 @@
+/**
+ *  This file is part of OpenALP.
+ *
+ *  OpenALP is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  OpenALP is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ *
+ *  A graph stored in a handful of primitive arrays instead of Node and Edge objects.
+ *  Nodes are numbered 0 to getNodeCount() - 1 and edges 0 to getEdgeCount() - 1. The
+ *  edges are sorted by source, so the edges leaving node n are getFirstEdge(n) up to
+ *  getEndEdge(n) (compressed sparse row). A second index lists the edges arriving at
+ *  each node, so undirected edges can be followed both ways.
+ *
+ *  An edge costs four ints and a bit, so even very large grammars fit comfortably in
+ *  memory, and walking a node's edges reads neighbouring array elements. The same
+ *  arrays are what write() puts on disk, so a graph can be saved and loaded without
+ *  building a tree of beans for every node and edge.
+ *
+ *  Immutable once built, and safe to share between threads.
+ *
+ * @see         Graph
+ **/
+
+package net.openalp.graph;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+public class CompactGraph {
+    private final int nodeCount;
+    private final int edgeCount;
+    // The match key of each node, see Node.getMatchKey().
+    private final int[] keys;
+
+    // Edge e leaves sources[e] for targets[e], outgoing edges of node n are offsets[n] to offsets[n + 1].
+    private final int[] offsets;
+    private final int[] sources;
+    private final int[] targets;
+    private final int[] usageCounts;
+    private final BitSet directed;
+
+    // The edges arriving at node n are incoming[incomingOffsets[n]] to incoming[incomingOffsets[n + 1] - 1].
+    private final int[] incomingOffsets;
+    private final int[] incoming;
+
+    /**
+     * Creates the nodes and edges of a graph when it is turned back into objects.
+     */
+    public interface Factory {
+        /**
+         * @param graph The compact graph being expanded.
+         * @param node The id of the node.
+         * @return A new node.
+         */
+        public Node createNode(CompactGraph graph, int node);
+
+        /**
+         * @param graph The compact graph being expanded.
+         * @param edge The id of the edge.
+         * @param src The node the edge leaves.
+         * @param dest The node the edge arrives at.
+         * @return A new edge between src and dest.
+         */
+        public Edge createEdge(CompactGraph graph, int edge, Node src, Node dest);
+    }
+
+    /**
+     * Makes plain nodes and edges, keeping only the direction of each edge.
+     */
+    public static final Factory PLAIN = new Factory() {
+        public Node createNode(CompactGraph graph, int node) {
+            return new Node();
+        }
+
+        public Edge createEdge(CompactGraph graph, int edge, Node src, Node dest) {
+            return new Edge(src, dest, graph.isDirected(edge));
+        }
+    };
+
+    /**
+     * Collects nodes and edges in any order, then sorts them into a CompactGraph.
+     */
+    public static class Builder {
+        private int[] keys = new int[16];
+        private int nodeCount;
+
+        private int[] sources = new int[16];
+        private int[] targets = new int[16];
+        private int[] usageCounts = new int[16];
+        private BitSet directed = new BitSet();
+        private int edgeCount;
+
+        /**
+         * Adds a node.
+         * @param key The match key of the node.
+         * @return The id of the node.
+         */
+        public int addNode(int key) {
+            if(nodeCount == keys.length) {
+                keys = grow(keys, nodeCount * 2);
+            }
+            keys[nodeCount] = key;
+            return nodeCount++;
+        }
+
+        /**
+         * Adds an edge.
+         * @param src The id of the node the edge leaves.
+         * @param dest The id of the node the edge arrives at.
+         * @param isDirected false if the edge can also be followed from dest to src.
+         * @param usageCount The number of times the edge has been used.
+         * @return The position the edge was added in. Edges are renumbered by build().
+         */
+        public int addEdge(int src, int dest, boolean isDirected, int usageCount) {
+            if(src < 0 || src >= nodeCount || dest < 0 || dest >= nodeCount) {
+                throw new IndexOutOfBoundsException("No node " + (src < 0 || src >= nodeCount ? src : dest));
+            }
+
+            if(edgeCount == sources.length) {
+                sources = grow(sources, edgeCount * 2);
+                targets = grow(targets, edgeCount * 2);
+                usageCounts = grow(usageCounts, edgeCount * 2);
+            }
+
+            sources[edgeCount] = src;
+            targets[edgeCount] = dest;
+            usageCounts[edgeCount] = usageCount;
+            directed.set(edgeCount, isDirected);
+            return edgeCount++;
+        }
+
+        public CompactGraph build() {
+            return new CompactGraph(this);
+        }
+    }
+
+    /**
+     * Copies a graph. Node n is graph.getNode(n), and edges keep the order they have in
+     * their source node's edge list. Nothing refers back to the graph afterwards.
+     * @param graph The graph to copy, which must not change while it is copied.
+     */
+    public CompactGraph(Graph graph) {
+        this(collect(graph));
+    }
+
+    private static Builder collect(Graph graph) {
+        Builder builder = new Builder();
+        Map<Node, Integer> ids = new IdentityHashMap<Node, Integer>();
+
+        for(Node node: graph.getNodes()) {
+            ids.put(node, builder.addNode(node.getMatchKey()));
+        }
+
+        // Every edge is in both its nodes lists, only take it from its source.
+        for(Node node: graph.getNodes()) {
+            for(Edge edge: node.getEdges()) {
+                Integer dest = ids.get(edge.getDest());
+                if(edge.getSrc() == node && dest != null) {
+                    builder.addEdge(ids.get(node), dest, edge.isDirected(), edge.getUsageCount());
+                }
+            }
+        }
+
+        return builder;
+    }
+
+    private CompactGraph(Builder builder) {
+        nodeCount = builder.nodeCount;
+        edgeCount = builder.edgeCount;
+        keys = new int[nodeCount];
+        System.arraycopy(builder.keys, 0, keys, 0, nodeCount);
+
+        // Counting sort by source, stable so each node keeps its edges in the order they were added.
+        offsets = new int[nodeCount + 1];
+        incomingOffsets = new int[nodeCount + 1];
+        for(int e = 0; e < edgeCount; e++) {
+            offsets[builder.sources[e] + 1]++;
+            incomingOffsets[builder.targets[e] + 1]++;
+        }
+        for(int n = 0; n < nodeCount; n++) {
+            offsets[n + 1] += offsets[n];
+            incomingOffsets[n + 1] += incomingOffsets[n];
+        }
+
+        sources = new int[edgeCount];
+        targets = new int[edgeCount];
+        usageCounts = new int[edgeCount];
+        directed = new BitSet(edgeCount);
+        int[] next = new int[nodeCount];
+        System.arraycopy(offsets, 0, next, 0, nodeCount);
+
+        for(int e = 0; e < edgeCount; e++) {
+            int position = next[builder.sources[e]]++;
+            sources[position] = builder.sources[e];
+            targets[position] = builder.targets[e];
+            usageCounts[position] = builder.usageCounts[e];
+            directed.set(position, builder.directed.get(e));
+        }
+
+        incoming = new int[edgeCount];
+        System.arraycopy(incomingOffsets, 0, next, 0, nodeCount);
+        for(int e = 0; e < edgeCount; e++) {
+            incoming[next[targets[e]]++] = e;
+        }
+    }
+
+    //----------------------------------------
+    // Simple getters
+    //----------------------------------------
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public int getKey(int node) {
+        return keys[node];
+    }
+
+    /**
+     * @param node The id of a node.
+     * @return The id of the first edge leaving the node.
+     */
+    public int getFirstEdge(int node) {
+        return offsets[node];
+    }
+
+    /**
+     * @param node The id of a node.
+     * @return The id after the last edge leaving the node.
+     */
+    public int getEndEdge(int node) {
+        return offsets[node + 1];
+    }
+
+    public int getSource(int edge) {
+        return sources[edge];
+    }
+
+    public int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    public boolean isDirected(int edge) {
+        return directed.get(edge);
+    }
+
+    public int getUsageCount(int edge) {
+        return usageCounts[edge];
+    }
+
+    /**
+     * @param node The id of a node.
+     * @return The number of edges leaving or arriving at the node.
+     */
+    public int getDegree(int node) {
+        return offsets[node + 1] - offsets[node] + incomingOffsets[node + 1] - incomingOffsets[node];
+    }
+
+    //----------------------------------------
+    // Non mutating logic
+    //----------------------------------------
+
+    /**
+     * Finds every node that can be reached from a node in one step, following the same rule as
+     * Node.getConnectedNodes(true).
+     * @param node The id of a node.
+     * @param successors Filled with the ids of the successors, must hold at least getDegree(node).
+     * @return The number of successors.
+     */
+    public int getSuccessors(int node, int[] successors) {
+        int count = 0;
+
+        for(int e = offsets[node]; e < offsets[node + 1]; e++) {
+            successors[count++] = targets[e];
+        }
+
+        for(int i = incomingOffsets[node]; i < incomingOffsets[node + 1]; i++) {
+            int e = incoming[i];
+            if(!directed.get(e)) {
+                successors[count++] = sources[e];
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Counts the edges between two nodes, ignoring their direction, as Node.getDistanceTo does.
+     * @param from The id of the node to start at.
+     * @param to The id of the node to find.
+     * @return The number of edges on the shortest path, or 0 if they are not connected.
+     */
+    public int getDistance(int from, int to) {
+        int[] queue = new int[nodeCount];
+        int[] depth = new int[nodeCount];
+        BitSet seen = new BitSet(nodeCount);
+        int head = 0;
+        int tail = 0;
+
+        queue[tail++] = from;
+        seen.set(from);
+
+        while(head < tail) {
+            int node = queue[head++];
+            if(node == to) {
+                return depth[node];
+            }
+
+            for(int e = offsets[node]; e < offsets[node + 1]; e++) {
+                int next = targets[e];
+                if(!seen.get(next)) {
+                    seen.set(next);
+                    depth[next] = depth[node] + 1;
+                    queue[tail++] = next;
+                }
+            }
+
+            for(int i = incomingOffsets[node]; i < incomingOffsets[node + 1]; i++) {
+                int next = sources[incoming[i]];
+                if(!seen.get(next)) {
+                    seen.set(next);
+                    depth[next] = depth[node] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Turns the graph back into objects.
+     * @param factory Creates each node and edge.
+     * @return A new graph, with node n at getNodes().get(n).
+     */
+    public Graph toGraph(Factory factory) {
+        Graph graph = new Graph();
+        Node[] created = new Node[nodeCount];
+
+        for(int n = 0; n < nodeCount; n++) {
+            created[n] = factory.createNode(this, n);
+            graph.addNode(created[n]);
+        }
+
+        for(int e = 0; e < edgeCount; e++) {
+            Node src = created[sources[e]];
+            Node dest = created[targets[e]];
+            Edge edge = factory.createEdge(this, e, src, dest);
+
+            // Every edge is new, so skip addEdge's search for duplicates. A loop is only listed once, as addEdge would.
+            src.getEdges().add(edge);
+            if(dest != src) {
+                dest.getEdges().add(edge);
+            }
+        }
+
+        return graph;
+    }
+
+    /**
+     * Writes the nodes and edges, as read() expects them. Keys are written as they are, so
+     * keys that only mean something in this program must be translated by the caller.
+     * @param out Where to write.
+     * @throws IOException If out cannot be written to.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(nodeCount);
+        for(int n = 0; n < nodeCount; n++) {
+            out.writeInt(keys[n]);
+        }
+
+        out.writeInt(edgeCount);
+        for(int e = 0; e < edgeCount; e++) {
+            out.writeInt(sources[e]);
+            out.writeInt(targets[e]);
+            out.writeInt(usageCounts[e]);
+            out.writeBoolean(directed.get(e));
+        }
+    }
+
+    /**
+     * Reads a graph written by write().
+     * @param in Where to read from.
+     * @return The graph, with the same node and edge ids it was written with.
+     * @throws IOException If in cannot be read, or does not hold a graph.
+     */
+    public static CompactGraph read(DataInput in) throws IOException {
+        Builder builder = new Builder();
+
+        int nodes = in.readInt();
+        if(nodes < 0) {
+            throw new IOException("Bad node count " + nodes);
+        }
+        for(int n = 0; n < nodes; n++) {
+            builder.addNode(in.readInt());
+        }
+
+        int edges = in.readInt();
+        if(edges < 0) {
+            throw new IOException("Bad edge count " + edges);
+        }
+        for(int e = 0; e < edges; e++) {
+            int src = in.readInt();
+            int dest = in.readInt();
+            int usageCount = in.readInt();
+            boolean isDirected = in.readBoolean();
+
+            if(src < 0 || src >= nodes || dest < 0 || dest >= nodes) {
+                throw new IOException("Edge " + e + " joins missing nodes");
+            }
+            builder.addEdge(src, dest, isDirected, usageCount);
+        }
+
+        return builder.build();
+    }
+
+    private static int[] grow(int[] array, int length) {
+        int[] grown = new int[length];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ *  This file is part of OpenALP.
+ *
+ *  OpenALP is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  OpenALP is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ *
+ *  The number of edges between every pair of nodes in a graph, ignoring their direction,
+ *  as Node.getDistanceTo would count them. Row i is the i-th node of the graph. The
+ *  layout asks for every pair many times a frame, so the distances are found once with a
+ *  breadth first search from each node, and then kept up to date as nodes are added and
+ *  connected.
+ *
+ *  Distances are stored as shorts, two bytes a pair. Rows have room to spare so adding a
+ *  node does not copy the whole matrix.
+ *
+ * @see         Graph#updateNodes()
+ **/
+
+package net.openalp.graph;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+class DistanceMatrix {
+    private static final short UNREACHABLE = Short.MAX_VALUE;
+
+    private final Map<Node, Integer> ids = new IdentityHashMap<Node, Integer>();
+    private short[] distances;
+    private int stride;
+    private int size;
+    // The graph's usn when we last checked, and the number of edge ends we know about. When the usn
+    // moves on, counting the edge ends tells us whether we were told about every change.
+    private int usn;
+    private int edgeEnds;
+    // Set when we were handed something we cannot update in place.
+    private boolean stale;
+
+    /**
+     * Finds the distance between every pair of nodes.
+     * @param nodes The nodes of the graph, which must not change while they are measured.
+     * @param usn The graph's update sequence number.
+     */
+    DistanceMatrix(List<Node> nodes, int usn) {
+        this.usn = usn;
+        size = nodes.size();
+        stride = Math.max(16, size);
+        distances = new short[stride * stride];
+        Arrays.fill(distances, UNREACHABLE);
+
+        Node[] byId = nodes.toArray(new Node[size]);
+        for(int i = 0; i < size; i++) {
+            ids.put(byId[i], i);
+        }
+
+        // Neighbour ids for every node, so the searches below touch nothing but arrays.
+        int[][] neighbours = new int[size][];
+        for(int i = 0; i < size; i++) {
+            List<Edge> edges = byId[i].getEdges();
+            int[] adjacent = new int[edges.size()];
+            int count = 0;
+
+            for(Edge edge: edges) {
+                Integer id = ids.get(edge.getSrc() == byId[i] ? edge.getDest() : edge.getSrc());
+                if(id != null) {
+                    adjacent[count++] = id;
+                }
+            }
+
+            neighbours[i] = new int[count];
+            System.arraycopy(adjacent, 0, neighbours[i], 0, count);
+            edgeEnds += edges.size();
+        }
+
+        int[] queue = new int[size];
+        for(int source = 0; source < size; source++) {
+            int row = source * stride;
+            int head = 0;
+            int tail = 0;
+
+            distances[row + source] = 0;
+            queue[tail++] = source;
+
+            while(head < tail) {
+                int node = queue[head++];
+                short next = (short)(distances[row + node] + 1);
+
+                for(int neighbour: neighbours[node]) {
+                    if(distances[row + neighbour] == UNREACHABLE) {
+                        distances[row + neighbour] = next;
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param nodes The nodes of the graph.
+     * @param usn The graph's update sequence number.
+     * @return true if the graph may have changed in a way we were not told about.
+     */
+    boolean isStale(List<Node> nodes, int usn) {
+        if(stale) {
+            return true;
+        } else if(usn == this.usn) {
+            return false;
+        }
+
+        // Touched, but only the layout may have changed.
+        if(nodes.size() != size) {
+            return true;
+        }
+
+        int ends = 0;
+        for(Node node: nodes) {
+            ends += node.getEdges().size();
+        }
+
+        if(ends != edgeEnds) {
+            return true;
+        }
+
+        this.usn = usn;
+        return false;
+    }
+
+    /**
+     * @param from The row of a node.
+     * @param to The row of another node.
+     * @return The number of edges between them, or 0 if they are the same node or not connected.
+     */
+    int get(int from, int to) {
+        short distance = distances[from * stride + to];
+        return distance == UNREACHABLE ? 0 : distance;
+    }
+
+    /**
+     * @return Every distance, row after row, with UNREACHABLE for nodes that are not connected.
+     *         The array is replaced when the matrix grows.
+     */
+    short[] getDistances() {
+        return distances;
+    }
+
+    /**
+     * @param row The row of a node.
+     * @return Where its row starts in getDistances().
+     */
+    int getRowStart(int row) {
+        return row * stride;
+    }
+
+    /**
+     * Adds a node. Nodes that are already connected to something cannot be added in place,
+     * they leave the matrix stale.
+     * @param node The new node.
+     */
+    void add(Node node) {
+        if(ids.containsKey(node)) {
+            return;
+        } else if(!node.getEdges().isEmpty()) {
+            stale = true;
+            return;
+        }
+
+        if(size == stride) {
+            int grown = stride * 2;
+            short[] copy = new short[grown * grown];
+            Arrays.fill(copy, UNREACHABLE);
+            for(int i = 0; i < size; i++) {
+                System.arraycopy(distances, i * stride, copy, i * grown, size);
+            }
+            distances = copy;
+            stride = grown;
+        } else {
+            // Rows and columns past the end may hold distances from nodes we no longer have.
+            Arrays.fill(distances, size * stride, (size + 1) * stride, UNREACHABLE);
+            for(int i = 0; i < size; i++) {
+                distances[i * stride + size] = UNREACHABLE;
+            }
+        }
+
+        distances[size * stride + size] = 0;
+        ids.put(node, size++);
+    }
+
+    /**
+     * Records a new edge. Every pair of nodes that is now closer through it is updated,
+     * which only touches the rows of nodes nearer one end of the edge than the other.
+     * @param src One end of the edge.
+     * @param dest The other end.
+     */
+    void connect(Node src, Node dest) {
+        Integer u = ids.get(src);
+        Integer v = ids.get(dest);
+        if(u == null || v == null) {
+            return;
+        }
+
+        edgeEnds += src == dest ? 1 : 2;
+        if(get(u, v) == 1 || u.intValue() == v.intValue()) {
+            return;
+        }
+
+        int uRow = u * stride;
+        int vRow = v * stride;
+
+        for(int a = 0; a < size; a++) {
+            int row = a * stride;
+            int toU = distances[row + u];
+            int toV = distances[row + v];
+
+            // Only one end can be the nearer one, the paths through the edge start there.
+            if(toU != UNREACHABLE && toU + 1 < toV) {
+                shorten(row, toU + 1, vRow);
+            } else if(toV != UNREACHABLE && toV + 1 < toU) {
+                shorten(row, toV + 1, uRow);
+            }
+        }
+    }
+
+    // Lowers every distance in a row to the distance to the far end of the edge plus the far end's own distance.
+    private void shorten(int row, int toFarEnd, int farRow) {
+        for(int b = 0; b < size; b++) {
+            int beyond = distances[farRow + b];
+            if(beyond != UNREACHABLE && toFarEnd + beyond < distances[row + b]) {
+                distances[row + b] = (short)(toFarEnd + beyond);
+            }
+        }
+    }
+}
@@ -67,6 +67,11 @@ public class Edge {
 		return 1.0f;
 	}
 
+	// The number of times the edge has been followed, plain edges have only been made once.
+	public int getUsageCount() {
+		return 1;
+	}
+
     
 
 //----------------------------------------
@@ -75,6 +80,10 @@ public class Edge {
 
 	public void setDirected(boolean directed) {
 		this.directed = directed;
+
+		// Which node can reach which has changed.
+		if(src != null) src.invalidateSuccessors();
+		if(dest != null) dest.invalidateSuccessors();
 	}
 
     public Color getColor() {
@@ -27,14 +27,47 @@ package net.openalp.graph;
 
 import java.util.LinkedList;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 public class Graph {
+    // Graphs with at least this many nodes are laid out with a Barnes-Hut quadtree instead of exactly.
+    public static int barnesHutThreshold = 1000;
+    // How small a cluster of nodes must look, its width over its distance, to be pulled on as one.
+    public static float barnesHutTheta = 0.8f;
+    // Nodes within this many edges of each other still pull on each other exactly in Barnes-Hut mode, the
+    // rest pull as if they were one edge further. More hops is closer to the exact layout, but slower.
+    public static int barnesHutHops = 3;
+    // The most edges each node follows to find those within barnesHutHops, so busy nodes do not make it
+    // search most of the graph. Nodes it does not get to are left to the tree.
+    public static int barnesHutEdges = 256;
+    // A node that moves less than the square root of this in a step stops being simulated, until a
+    // neighbour moves more than that or the graph changes.
+    public static float settleThreshold = 1e-6f;
+    // Layout steps are split into chunks of this many nodes, each one a task for the pool.
+    private static final int LAYOUT_CHUNK = 64;
+    // Shared by every graph, it has a worker per core.
+    private static final ForkJoinPool layoutPool = new ForkJoinPool();
 	private LinkedList<Node> nodes = new LinkedList<Node>();
 	private static final Random rand = new Random();
 	private float minX, maxX, minY, maxY;
 	private float delta;
-	private int usn;
+	private volatile int usn;
+    // Signalled whenever the usn moves on. Only changed() moves it.
+    private final Lock updateLock = new ReentrantLock();
+    private final Condition updated = updateLock.newCondition();
+    // The usn of the last layout step, every node is woken when it moves on.
+    private int layoutUsn = -1;
+    // Built the first time a merge point is searched for, then kept up to date by addNode and connect.
+    private volatile ReachabilityIndex reachability;
+    // The layout needs the distance between every pair of nodes every frame, so they are kept here.
+    private DistanceMatrix distances;
+    // The state of every node during a layout step, reused from step to step.
+    private final LayoutKernel kernel = new LayoutKernel();
     
     public Graph() {};
 
@@ -73,6 +106,11 @@ public class Graph {
 		return delta;
 	}
 
+    // The update sequence number, which moves on every time the graph changes.
+    public int getUsn() {
+        return usn;
+    }
+
     public void setMinX(float minX) {
         this.minX = minX;
     }
@@ -95,24 +133,55 @@ public class Graph {
 
     public void setNodes(LinkedList<Node> nodes) {
         this.nodes = nodes;
+        reachability = null;
+        distances = null;
+        changed();
     }
 
     //----------------------------------------
 	// Non mutating logic
 	//----------------------------------------
 
+    // Searches outwards from a node, not counting the node itself unless it can reach itself, for
+    // the nearest node matching the filter. Returns null if there is none.
+    // Keyed filters are searched for through the reachability index, so a search that would
+    // fail costs nothing and one that succeeds only walks towards the match.
+    public Node findMatchingNode(Node from, NodeFilter filter) {
+        if(filter instanceof KeyedFilter) {
+            ReachabilityIndex index;
+            synchronized(nodes) {
+                if(reachability == null || reachability.isStale()) {
+                    reachability = new ReachabilityIndex(nodes);
+                }
+                index = reachability;
+            }
+
+            return index.findMatchingNode(from, (KeyedFilter)filter);
+        }
+
+        return from.findMatchingNode(filter, true);
+    }
+
 	// Causes the calling thread to sleep until the graph has changed.
 	public void waitForUpdate() {
-		int usn = this.usn;
-		while(usn == this.usn) {
-			try {
-				Thread.sleep(250);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
+		waitForUpdate(usn);
 	}
 
+    // Causes the calling thread to sleep until the graph has changed since getUsn() returned usn.
+    // Returns straight away if it already has, so no change between the two calls is missed.
+    public void waitForUpdate(int usn) {
+        updateLock.lock();
+        try {
+            while(usn == this.usn) {
+                updated.await();
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
 	//----------------------------------------
 	// Mutators
 	//----------------------------------------
@@ -120,28 +189,50 @@ public class Graph {
 	public void clear() {
 		synchronized(nodes) {
             nodes.clear();
+            reachability = null;
+            distances = null;
         };
+        changed();
 	}
 
 	// forces an update of the graph (call me if youve only made changes to the connections and not created any new nodes)
 	public void touch() {
-		usn++;
+		changed();
 	}
 
+    // Moves the usn on and wakes everything waiting for an update.
+    private void changed() {
+        updateLock.lock();
+        try {
+            usn++;
+            updated.signalAll();
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
 	// Creates a new node as part of this graph.
 	public Node createNode() {
 		Node n = new Node();
-		nodes.add(n);
-		usn++;
+		addNode(n);
 
 		return n;
 	}
 
     public void addNode(Node node) {
         nodes.add(node);
-        usn++;
+        if(reachability != null) {
+            reachability.add(node);
+        }
+        if(distances != null) {
+            distances.add(node);
+        }
+        changed();
     }
 
+    // Connects two nodes, reusing the reverse edge as an undirected one if there is one.
+    // Both nodes successor indexes are invalidated by addEdge and setDirected.
+    // Busy nodes look up their edges by neighbour, so this takes constant time however many edges they have.
     public void connect(Edge e) {
         Node src = e.getSrc();
         Node dest = e.getDest();
@@ -152,7 +243,21 @@ public class Graph {
             } else {
                 src.addEdge(e);
                 dest.addEdge(e);
+
+                // Distances ignore direction, so only a new edge changes them.
+                if(distances != null) {
+                    distances.connect(src, dest);
+                }
+            }
+
+            if(reachability != null) {
+                reachability.connect(src, dest);
+                if(!e.isDirected()) {
+                    reachability.connect(dest, src);
+                }
             }
+
+            changed();
         }
     }
 
@@ -166,10 +271,12 @@ public class Graph {
                 connect(new Edge(n, nodes.get(rand.nextInt(nodes.size()))));
 			}
 		}
-		usn++;
+		changed();
 	}
 
 	// Updates all the nodes position based on a force based algorithm.
+	// Every node is pulled on from the same snapshot of positions, so they can all be updated at once
+	// across the cores of the machine, and the result does not depend on which was updated first.
 	public void updateNodes() {
 		synchronized(nodes) {
             float maxX = Float.NEGATIVE_INFINITY;
@@ -178,12 +285,42 @@ public class Graph {
             float minY = Float.POSITIVE_INFINITY;
             float delta = 0;
 
-            for(Node n: nodes) {
-                delta += n.updatePosition(nodes);
-                if(n.getX() < minX) { minX = n.getX(); }
-                if(n.getX() > maxX) { maxX = n.getX(); }
-                if(n.getY() < minY) { minY = n.getY(); }
-                if(n.getY() > maxY) { maxY = n.getY(); }
+            // Something changed, so settled nodes may have somewhere new to be.
+            if(layoutUsn != usn) {
+                layoutUsn = usn;
+                for(Node n: nodes) {
+                    n.settled = false;
+                }
+            }
+
+            kernel.load(nodes);
+
+            // Every pair of distances is too much for a big graph, so it gets the approximation instead.
+            QuadTree tree = null;
+            if(nodes.size() >= barnesHutThreshold) {
+                tree = new QuadTree(kernel.getX(), kernel.getY());
+                distances = null;
+            } else if(distances == null || distances.isStale(nodes, usn)) {
+                distances = new DistanceMatrix(nodes, usn);
+            }
+
+            LayoutStep step = new LayoutStep(kernel, tree, distances, 0, kernel.size());
+            if(kernel.size() > LAYOUT_CHUNK) {
+                layoutPool.invoke(step);
+            } else {
+                step.compute();
+            }
+            kernel.store();
+            settle(step.deltas);
+
+            float[] xs = kernel.getX();
+            float[] ys = kernel.getY();
+            for(int row = 0; row < kernel.size(); row++) {
+                delta += step.deltas[row];
+                if(xs[row] < minX) { minX = xs[row]; }
+                if(xs[row] > maxX) { maxX = xs[row]; }
+                if(ys[row] < minY) { minY = ys[row]; }
+                if(ys[row] > maxY) { maxY = ys[row]; }
             }
 
             this.maxX = maxX;
@@ -193,4 +330,66 @@ public class Graph {
             this.delta = delta;
         }
 	}
+
+    // Puts the nodes that hardly moved this step to sleep, then wakes the neighbours of those that did.
+    private void settle(float[] deltas) {
+        for(int row = 0; row < kernel.size(); row++) {
+            kernel.getNode(row).settled = deltas[row] < settleThreshold;
+        }
+
+        for(int row = 0; row < kernel.size(); row++) {
+            if(deltas[row] >= settleThreshold) {
+                Node n = kernel.getNode(row);
+                for(Edge e: n.getEdges()) {
+                    e.getSrc().settled = false;
+                    e.getDest().settled = false;
+                }
+            }
+        }
+    }
+
+    // Updates the nodes in rows start to end, splitting them in half until there are few enough for one task.
+    private static class LayoutStep extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final LayoutKernel kernel;
+        private final QuadTree tree;
+        private final DistanceMatrix distances;
+        private final int start;
+        private final int end;
+        // How far each node moved, shared by every task of the step.
+        private final float[] deltas;
+
+        public LayoutStep(LayoutKernel kernel, QuadTree tree, DistanceMatrix distances, int start, int end) {
+            this(kernel, tree, distances, start, end, new float[end]);
+        }
+
+        private LayoutStep(LayoutKernel kernel, QuadTree tree, DistanceMatrix distances, int start, int end, float[] deltas) {
+            this.kernel = kernel;
+            this.tree = tree;
+            this.distances = distances;
+            this.start = start;
+            this.end = end;
+            this.deltas = deltas;
+        }
+
+        protected void compute() {
+            if(end - start > LAYOUT_CHUNK) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new LayoutStep(kernel, tree, distances, start, middle, deltas),
+                          new LayoutStep(kernel, tree, distances, middle, end, deltas));
+                return;
+            }
+
+            // Shared by every row of the task.
+            float[] net = tree == null ? null : new float[2];
+
+            for(int row = start; row < end; row++) {
+                if(tree != null) {
+                    deltas[row] = kernel.step(row, tree, barnesHutTheta, barnesHutHops, barnesHutEdges, net);
+                } else {
+                    deltas[row] = kernel.step(row, distances);
+                }
+            }
+        }
+    }
 }
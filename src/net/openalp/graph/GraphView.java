@@ -41,8 +41,10 @@ import java.awt.event.MouseMotionListener;
 import java.util.List;
 
 public class GraphView extends JComponent implements Runnable, MouseMotionListener, MouseListener {
-	private Graph graph;
-	private Node dragNode = null;
+	private volatile Graph graph;
+	private volatile Node dragNode = null;
+	// Once the nodes move less than this in total the layout has settled, and waits for the graph to change.
+	private static final float settledDelta = 0.01f;
 	private static final int arrowWidth = 4;
 	private static final int arrowLength = 7;
 
@@ -61,7 +63,10 @@ public class GraphView extends JComponent implements Runnable, MouseMotionListen
 	}
 
     public void setGraph(Graph graph) {
+        Graph old = this.graph;
         this.graph = graph;
+        // The layout may be waiting on the old graph.
+        old.touch();
     }
 
     //----------------------------------------
@@ -177,24 +182,28 @@ public class GraphView extends JComponent implements Runnable, MouseMotionListen
 
 
 
+	// Runs the layout while it is still moving or a node is being dragged, then sleeps until the graph changes.
 	@SuppressWarnings({"InfiniteLoopStatement"})	
 	public void run() {
 		while(true) {
+			Graph graph = this.graph;
+			// Taken first, so a change made during the steps below still wakes us.
+			int usn = graph.getUsn();
+
 			graph.updateNodes();
             graph.updateNodes();
             graph.updateNodes();
 
-//			if(graph.getDelta() < 0.01f) {
-//				graph.waitForUpdate();
-//				graph.updateNodes();
-//			}
-
 			repaint();
-			
-			try {
-				Thread.sleep(1);
-			} catch(InterruptedException e) {
-				System.out.print("Boom!");
+
+			if(graph.getDelta() < settledDelta && dragNode == null) {
+				graph.waitForUpdate(usn);
+			} else {
+				try {
+					Thread.sleep(1);
+				} catch(InterruptedException e) {
+					System.out.print("Boom!");
+				}
 			}
 		}
 	}
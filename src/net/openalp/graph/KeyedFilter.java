@@ -0,0 +1,39 @@
+/**
+ *  This file is part of OpenALP.
+ *
+ *  OpenALP is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  OpenALP is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ *
+ *  A NodeFilter that only matches nodes with certain match keys. Searches use the keys to
+ *  jump straight to the matching successors of a node instead of testing every one.
+ *
+ *  matches() must return true exactly for the nodes whose getMatchKey() is one of the keys.
+ *
+ * @see         Node#getMatchKey()
+ * @see         Node#getSuccessors(int)
+ **/
+
+package net.openalp.graph;
+
+public interface KeyedFilter extends NodeFilter {
+    /**
+     * @return The number of keys this filter matches.
+     */
+    public int getKeyCount();
+
+    /**
+     * @param index The index of a key, from 0 to getKeyCount() - 1.
+     * @return The key.
+     */
+    public int getKey(int index);
+}
@@ -0,0 +1,262 @@
+/**
+ *  This file is part of OpenALP.
+ *
+ *  OpenALP is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  OpenALP is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ *
+ *  The arithmetic of a layout step, over flat arrays of node state instead of Node and
+ *  Force objects. Row i holds the position and velocity of the i-th node of the graph.
+ *
+ *  Springs are worked out in vector form. The direction of a spring is the difference in
+ *  position over its length, so no trigonometry is needed. The stiffness and length of
+ *  every spring come from tables indexed by the number of edges between its ends. The
+ *  inner loop is plain arithmetic over neighbouring array elements, which the JIT can
+ *  unroll and vectorise, and nothing is allocated per pair.
+ *
+ *  Nodes that have settled are not simulated at all, they stay where they are and keep
+ *  pulling on the rest.
+ *
+ *  Positions are double buffered. Forces are read from the current positions and new
+ *  positions are written to the next ones, which store() makes current once every row
+ *  is done. Rows can be stepped in any order, or all at once from different threads.
+ *
+ * @see         Graph#updateNodes()
+ **/
+
+package net.openalp.graph;
+
+import java.util.List;
+
+final class LayoutKernel {
+    // Springs between nodes this far apart have underflowed to nothing. Further and unreachable nodes share the last entry.
+    private static final int MAX_DISTANCE = 127;
+
+    private final float[] stiffness = new float[MAX_DISTANCE + 1];
+    private final float[] length = new float[MAX_DISTANCE + 1];
+
+    private int count;
+    private Node[] nodes = new Node[0];
+    private float[] x = new float[0];
+    private float[] y = new float[0];
+    private float[] dx = new float[0];
+    private float[] dy = new float[0];
+    private float[] nextX = new float[0];
+    private float[] nextY = new float[0];
+    private boolean[] locked = new boolean[0];
+    private boolean[] settled = new boolean[0];
+
+    /**
+     * Copies the state of every node, and the spring settings in Node, ready for a step.
+     * @param list The nodes of the graph.
+     */
+    void load(List<Node> list) {
+        count = list.size();
+        if(nodes.length != count) {
+            nodes = new Node[count];
+            x = new float[count];
+            y = new float[count];
+            dx = new float[count];
+            dy = new float[count];
+            nextX = new float[count];
+            nextY = new float[count];
+            locked = new boolean[count];
+            settled = new boolean[count];
+        }
+
+        int row = 0;
+        for(Node node: list) {
+            node.layoutRow = row;
+            nodes[row] = node;
+            x[row] = node.getX();
+            y[row] = node.getY();
+            dx[row] = node.getDx();
+            dy[row] = node.getDy();
+            locked[row] = node.isLocked();
+            settled[row] = node.settled;
+            row++;
+        }
+
+        // 0 edges apart means not connected at all, which pulls with no force.
+        for(int distance = 1; distance < MAX_DISTANCE; distance++) {
+            stiffness[distance] = Node.springyness * (float)Math.pow(Node.springeynessFalloff, distance);
+            length[distance] = Node.springLength * (distance + (Node.springLengthExtra * (distance - 1)));
+        }
+    }
+
+    /**
+     * Moves every node to its new position. Locked nodes are left alone, they may be being
+     * dragged, and writing back where they were at load() would undo the drag.
+     */
+    void store() {
+        float[] swap = x;
+        x = nextX;
+        nextX = swap;
+        swap = y;
+        y = nextY;
+        nextY = swap;
+
+        for(int row = 0; row < count; row++) {
+            if(!locked[row]) {
+                nodes[row].move(x[row], y[row], dx[row], dy[row]);
+            }
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    Node getNode(int row) {
+        return nodes[row];
+    }
+
+    /**
+     * @return The current x of each node. Only the first size() are in use.
+     */
+    float[] getX() {
+        return x;
+    }
+
+    /**
+     * @return The current y of each node. Only the first size() are in use.
+     */
+    float[] getY() {
+        return y;
+    }
+
+    /**
+     * Pulls a node towards or away from every other node, as Node.updatePosition does.
+     * @param row The node to step.
+     * @param distances The distance between every pair of nodes, in the same order.
+     * @return How far the node moved, squared.
+     */
+    float step(int row, DistanceMatrix distances) {
+        if(settled[row]) {
+            return stay(row);
+        }
+
+        short[] hops = distances.getDistances();
+        int start = distances.getRowStart(row);
+        float px = x[row];
+        float py = y[row];
+        float forceX = 0;
+        float forceY = 0;
+
+        for(int column = 0; column < count; column++) {
+            int distance = Math.min(hops[start + column], MAX_DISTANCE);
+            float towardsX = x[column] - px;
+            float towardsY = y[column] - py;
+            float squared = towardsX * towardsX + towardsY * towardsY;
+            float hyp = (float)Math.sqrt(squared);
+            // Ourselves and nodes in the same place have no direction to pull in.
+            float scale = squared > 0 ? stiffness[distance] * (hyp - length[distance]) / squared : 0;
+            forceX += scale * towardsX;
+            forceY += scale * towardsY;
+        }
+
+        return move(row, forceX, forceY);
+    }
+
+    /**
+     * The Barnes-Hut version, for graphs too big to measure every pair. The tree pulls on the node with
+     * every node as if it were hops + 1 edges away. Nodes nearer than that are found with a search, and
+     * get their exact spring in place of the tree's guess. Unconnected nodes are treated as far away too.
+     *
+     * Through a busy node, such as the START or END of a grammar, a few hops can reach most of the
+     * graph. So the search stops following edges once it has followed maxEdges of them, and the
+     * nodes it has not reached by then are left to the tree.
+     * @param row The node to step.
+     * @param tree A tree over the current positions.
+     * @param theta How small a cluster must look to be pulled on as one.
+     * @param hops How many edges away nodes still get their exact spring.
+     * @param maxEdges The most edges the search follows.
+     * @param net Scratch space for the net force, at least two long, so rows can share one.
+     * @return How far the node moved, squared.
+     */
+    float step(int row, QuadTree tree, float theta, int hops, int maxEdges, float[] net) {
+        if(settled[row]) {
+            return stay(row);
+        }
+
+        int far = Math.min(hops + 1, MAX_DISTANCE);
+        net[0] = 0;
+        net[1] = 0;
+        tree.force(row, theta, stiffness[far], length[far], net);
+        int edges = maxEdges;
+
+        SearchFrontier frontier = SearchFrontier.acquire();
+
+        try {
+            frontier.visit(nodes[row]);
+            frontier.add(nodes[row], -1, 0);
+
+            for(int head = 0; head < frontier.size(); head++) {
+                Node node = frontier.getNode(head);
+                int depth = frontier.getDepth(head);
+
+                // Nodes that are not in the graph are not in the tree either.
+                int column = node.layoutRow;
+                if(depth > 0 && column >= 0 && column < count && nodes[column] == node) {
+                    int distance = Math.min(depth, MAX_DISTANCE);
+                    float towardsX = x[column] - x[row];
+                    float towardsY = y[column] - y[row];
+                    float squared = towardsX * towardsX + towardsY * towardsY;
+
+                    if(squared > 0) {
+                        float hyp = (float)Math.sqrt(squared);
+                        float scale = (stiffness[distance] * (hyp - length[distance]) - stiffness[far] * (hyp - length[far])) / squared;
+                        net[0] += scale * towardsX;
+                        net[1] += scale * towardsY;
+                    }
+                }
+
+                if(depth < hops) {
+                    for(Edge e: node.getEdges()) {
+                        if(edges-- <= 0) {
+                            break;
+                        }
+                        Node neighbour = e.getSrc() == node ? e.getDest() : e.getSrc();
+                        if(frontier.visit(neighbour)) {
+                            frontier.add(neighbour, head, depth + 1);
+                        }
+                    }
+                }
+            }
+        } finally {
+            frontier.release();
+        }
+
+        return move(row, net[0], net[1]);
+    }
+
+    // Applies the net force to a node's velocity, and its velocity to its next position.
+    private float move(int row, float forceX, float forceY) {
+        if(locked[row]) {
+            return stay(row);
+        }
+
+        dx[row] = (dx[row] + forceX) * Node.dampening;
+        dy[row] = (dy[row] + forceY) * Node.dampening;
+        nextX[row] = x[row] + dx[row];
+        nextY[row] = y[row] + dy[row];
+
+        return (dx[row] * dx[row]) + (dy[row] * dy[row]);
+    }
+
+    // Leaves a node where it is.
+    private float stay(int row) {
+        nextX[row] = x[row];
+        nextY[row] = y[row];
+        return 0.0f;
+    }
+}
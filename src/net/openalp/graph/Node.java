@@ -31,11 +31,22 @@ package net.openalp.graph;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.awt.geom.Rectangle2D;
 
 public class Node {
+    // The match key of nodes that do not have one.
+    public static final int NO_KEY = Integer.MIN_VALUE;
 	private LinkedList<Edge> edges = new LinkedList<Edge>();
+    // Built from the edges the first time they are searched, and dropped whenever they change.
+    private volatile SuccessorIndex successorIndex;
+    // Moves on whenever any node changes its match key, so indexes of keys know they are out of date.
+    private static final AtomicInteger keyChanges = new AtomicInteger();
+    // Nodes with more edges than this find their edges through a map of neighbour to edge.
+    private static final int MAX_SCANNED_EDGES = 8;
+    // The first edge to each neighbour, kept up to date by addEdge and rebuilt if edges are added behind its back.
+    // Built in full before it is published, so searches on other threads never see it half done.
+    private volatile NeighbourIndex neighbours;
 	public static float springyness = 2.0f;
     public static float springeynessFalloff = 0.2f;
 	public static float springLength = 1.0f;
@@ -45,8 +56,12 @@ public class Node {
 	private float dx = 0;
 	private float dy = 0;
 	private static final int size = 37;
+    // Our row in the LayoutKernel of the step that last moved us.
+    int layoutRow = -1;
+    // Set by the layout once we stop moving, we are then left alone until something changes.
+    boolean settled;
 	private boolean locked = false;
-    private static final float dampening = 0.75f;
+    static final float dampening = 0.75f;
 
 
     //----------------------------------------
@@ -81,6 +96,77 @@ public class Node {
 
     public void setEdges(LinkedList<Edge> edges) {
         this.edges = edges;
+        neighbours = null;
+        invalidateSuccessors();
+    }
+
+    /**
+     * The key searches use to find this node among the successors of another node. Nodes
+     * with the same key match the same KeyedFilters.
+     * @return The key, or NO_KEY if the node is only found by testing filters against it.
+     * @see KeyedFilter
+     */
+    public int getMatchKey() {
+        return NO_KEY;
+    }
+
+    /**
+     * Must be called by subclasses whenever getMatchKey() changes. Our neighbours have us filed
+     * under our old key, and any reachability index built from it is out of date.
+     */
+    protected void matchKeyChanged() {
+        // Edges can still be half built while a grammar is being decoded.
+        for(Edge edge: edges) {
+            if(edge.getSrc() != null) {
+                edge.getSrc().invalidateSuccessors();
+            }
+            if(edge.getDest() != null) {
+                edge.getDest().invalidateSuccessors();
+            }
+        }
+
+        keyChanges.incrementAndGet();
+    }
+
+    /**
+     * @return A count that moves on whenever any node changes its match key.
+     */
+    static int getKeyChanges() {
+        return keyChanges.get();
+    }
+
+    /**
+     * @return Every node that can be reached from this node in one step. Must not be modified.
+     */
+    public Node[] getSuccessors() {
+        return getSuccessorIndex().all;
+    }
+
+    /**
+     * Finds the successors with a given match key in a single hash probe.
+     * @param key A match key.
+     * @return Every node reachable from this node in one step with that key. Must not be modified.
+     */
+    public Node[] getSuccessors(int key) {
+        return getSuccessorIndex().get(key);
+    }
+
+    /**
+     * Drops the successor index so it is rebuilt on the next search. Must be called when an
+     * edge of this node changes direction or a successor changes its match key. Edges added
+     * with addEdge, or straight to getEdges(), are noticed on their own.
+     */
+    public void invalidateSuccessors() {
+        successorIndex = null;
+    }
+
+    private SuccessorIndex getSuccessorIndex() {
+        SuccessorIndex index = successorIndex;
+        if(index == null || index.edgeCount != edges.size()) {
+            index = new SuccessorIndex(this);
+            successorIndex = index;
+        }
+        return index;
     }
 
     /**
@@ -90,6 +176,12 @@ public class Node {
      * @return an edge that connects to destination, or null if one does not exists.
      */
     public Edge getEdgeTo(Node destination) {
+        NeighbourIndex index = getNeighbours();
+        // Every edge touches us, so asking for ourselves gets the first edge, not just a loop.
+        if(index != null && destination != this) {
+            return index.edges.get(destination);
+        }
+
         for(Edge e: edges) {
             if(e.getDest() == destination || e.getSrc() == destination) {
                 return e;
@@ -99,166 +191,220 @@ public class Node {
         return null;
     }
 
-    // Searches from this node through the graph to find a node matching the filter.
-    // If none is found it returns null, otherwise it returns the path to that node.
-    public Node findMatchingNode(NodeFilter filter, boolean selfless) {
-        Queue<LinkedList<Node>> searchQueue = new ConcurrentLinkedQueue<LinkedList<Node>>();
-        LinkedList<Node> examined = new LinkedList<Node>();
-
-        if(selfless) {
-            for(Node node: getConnectedNodes()) {
-                LinkedList<Node> start = new LinkedList<Node>();
-                start.add(node);
-                searchQueue.add(start);
-            }
-        } else {
-            LinkedList<Node> start = new LinkedList<Node>();
-            start.add(this);
-            searchQueue.add(start);
+    // Returns the map of neighbour to edge, or null if we have few enough edges to search them.
+    private NeighbourIndex getNeighbours() {
+        if(edges.size() <= MAX_SCANNED_EDGES) {
+            return null;
         }
 
+        NeighbourIndex index = neighbours;
+        if(index == null || index.edgeCount != edges.size()) {
+            Map<Node, Edge> map = new IdentityHashMap<Node, Edge>(edges.size() * 2);
+            boolean parallelEdges = false;
+
+            for(Edge e: edges) {
+                Node neighbour = e.getSrc() == this ? e.getDest() : e.getSrc();
+                if(map.containsKey(neighbour)) {
+                    parallelEdges = true;
+                } else {
+                    map.put(neighbour, e);
+                }
+            }
 
+            // Two searches may both rebuild it, either result is right.
+            index = new NeighbourIndex(map, edges.size(), parallelEdges);
+            neighbours = index;
+        }
 
-        LinkedList<Node> path;
-
-        while((path = searchQueue.poll()) != null) {
-
-            Node endNode = path.getLast();
+        return index;
+    }
 
-            examined.add(endNode);
+    // The map of neighbour to edge along with the number of edges it was built from.
+    private static final class NeighbourIndex {
+        final Map<Node, Edge> edges;
+        final int edgeCount;
+        // Set if some neighbour is joined to us by more than one edge, so the map does not know every edge.
+        final boolean parallelEdges;
+
+        NeighbourIndex(Map<Node, Edge> edges, int edgeCount, boolean parallelEdges) {
+            this.edges = edges;
+            this.edgeCount = edgeCount;
+            this.parallelEdges = parallelEdges;
+        }
+    }
 
-            //  If we have found a match return the path.
-            if (filter.matches(endNode)) {
-                return endNode;
+    // Searches from this node through the graph to find a node matching the filter.
+    // If none is found it returns null, otherwise it returns the matching node.
+    public Node findMatchingNode(NodeFilter filter, boolean selfless) {
+        SearchFrontier frontier = SearchFrontier.acquire();
+
+        try {
+            if(selfless) {
+                // We are not marked as seen, so a loop back to us can still match.
+                for(Node node: getSuccessors()) {
+                    if(frontier.visit(node)) {
+                        frontier.add(node, -1, 1);
+                    }
+                }
+            } else {
+                frontier.visit(this);
+                frontier.add(this, -1, 0);
             }
 
-            // otherwise add all the child nodes for examinations.
-            for(Node linkedNode: endNode.getConnectedNodes()) {
-                if(!examined.contains(linkedNode)) {
-                    LinkedList<Node> newPath = new LinkedList<Node>(path);
-                    newPath.add(linkedNode);
+            for(int head = 0; head < frontier.size(); head++) {
+                Node node = frontier.getNode(head);
 
-                    searchQueue.add(newPath);
+                //  If we have found a match return it.
+                if(filter.matches(node)) {
+                    return node;
+                }
+
+                // otherwise add all the child nodes for examination.
+                for(Node linkedNode: node.getSuccessors()) {
+                    if(frontier.visit(linkedNode)) {
+                        frontier.add(linkedNode, head, frontier.getDepth(head) + 1);
+                    }
                 }
             }
-        }
 
-        return null;
+            return null;
+        } finally {
+            frontier.release();
+        }
     }
 
     // Returns a path through where every node matches the filter for that step.
     // If we cannot find a complete path, the longest partial match will be returned.
+    // Each frontier entry knows its depth, and so which filter its successors must match.
+    // Reaching a node twice at the same depth would only repeat the same search, so each
+    // depth gets its own visited set.
     public List<Node> getMatchedPath(List<NodeFilter> filter) {
-        Queue<LinkedList<Node>> searchQueue = new ConcurrentLinkedQueue<LinkedList<Node>>();
-        LinkedList<Node> longestpath = new LinkedList<Node>();
-
-        LinkedList<Node> start = new LinkedList<Node>();
-        start.add(this);
+        SearchFrontier frontier = SearchFrontier.acquire();
 
-        searchQueue.add(start);
+        try {
+            int steps = filter.size();
+            int longest = frontier.add(this, -1, 0);
+            int level = 0;
 
-        LinkedList<Node> path;
-        int i = 0;
-        while((path = searchQueue.poll()) != null) {
-            Node lastNode = path.getLast();
-
-            // We have consumed all our tokens, and they all match. Good Work!
-            // Give the user his path.
-            if(i >= filter.size()) {
-                return path;
+            if(steps == 0) {
+                return frontier.getPath(longest);
             }
 
+            for(int head = 0; head < frontier.size(); head++) {
+                Node node = frontier.getNode(head);
+                int depth = frontier.getDepth(head);
 
-            for(Node linkedNode: lastNode.getConnectedNodes()) {
-                if(filter.get(i).matches(linkedNode)) {
-                    LinkedList<Node> newPath = new LinkedList<Node>(path);
-                    newPath.add(linkedNode);
-
-                    searchQueue.add(newPath);
+                if(depth != level) {
+                    frontier.forget();
+                    level = depth;
+                }
 
-                    if(newPath.size() > longestpath.size()) {
-                        longestpath = newPath;
+                NodeFilter step = filter.get(depth);
+
+                if(step instanceof KeyedFilter) {
+                    // Only look at the successors with a matching key.
+                    KeyedFilter keyed = (KeyedFilter)step;
+                    for(int k = 0; k < keyed.getKeyCount(); k++) {
+                        for(Node linkedNode: node.getSuccessors(keyed.getKey(k))) {
+                            if(frontier.visit(linkedNode)) {
+                                int entry = frontier.add(linkedNode, head, depth + 1);
+
+                                // We have consumed all our tokens, and they all match. Good Work!
+                                if(depth + 1 == steps) {
+                                    return frontier.getPath(entry);
+                                }
+                                if(frontier.getDepth(longest) <= depth) {
+                                    longest = entry;
+                                }
+                            }
+                        }
+                    }
+                } else {
+                    for(Node linkedNode: node.getSuccessors()) {
+                        if(step.matches(linkedNode) && frontier.visit(linkedNode)) {
+                            int entry = frontier.add(linkedNode, head, depth + 1);
+
+                            if(depth + 1 == steps) {
+                                return frontier.getPath(entry);
+                            }
+                            if(frontier.getDepth(longest) <= depth) {
+                                longest = entry;
+                            }
+                        }
                     }
                 }
             }
-            i++;
-        }
 
-        return longestpath;
+            // Not even the first token matched.
+            if(longest == 0) {
+                return new LinkedList<Node>();
+            }
 
+            return frontier.getPath(longest);
+        } finally {
+            frontier.release();
+        }
     }
 
     // Attempts to find a path between this node and the destination node.
-    // Makes use of a depth-first search so nearby entrys will be matched quickly.
+    // Makes use of a breadth-first search so nearby entrys will be matched quickly.
     // Loop safe.
     // Returns null if no match is found.
     public LinkedList<Node> getPath(Node destination) {
-        Queue<LinkedList<Node>> searchQueue = new ConcurrentLinkedQueue<LinkedList<Node>>();
-        LinkedList<Node> examined = new LinkedList<Node>();
-
-        LinkedList<Node> start = new LinkedList<Node>();
-        start.add(this);
-
-        searchQueue.add(start);
+        SearchFrontier frontier = SearchFrontier.acquire();
 
-        LinkedList<Node> path;
+        try {
+            frontier.visit(this);
+            frontier.add(this, -1, 0);
 
-        while((path = searchQueue.poll()) != null) {
+            for(int head = 0; head < frontier.size(); head++) {
+                Node lastNode = frontier.getNode(head);
 
-            Node lastNode = path.getLast();
-
-            examined.add(lastNode);
-
-            if (lastNode == destination) {
-                return path;
-            }
-
-            for(Node linkedNode: lastNode.getConnectedNodes()) {
-                if(!examined.contains(linkedNode)) {
-                    LinkedList<Node> newPath = new LinkedList<Node>(path);
-                    newPath.add(linkedNode);
+                if(lastNode == destination) {
+                    return frontier.getPath(head);
+                }
 
-                    searchQueue.add(newPath);
+                for(Node linkedNode: lastNode.getSuccessors()) {
+                    if(frontier.visit(linkedNode)) {
+                        frontier.add(linkedNode, head, frontier.getDepth(head) + 1);
+                    }
                 }
             }
-        }
-
-        return null;
 
+            return null;
+        } finally {
+            frontier.release();
+        }
     }
 
+    // The number of edges between this node and the destination, ignoring their direction.
+    // Returns 0 if they are not connected.
     public int getDistanceTo(Node destination) {
-        Queue<LinkedList<Node>> searchQueue = new ConcurrentLinkedQueue<LinkedList<Node>>();
-        LinkedList<Node> examined = new LinkedList<Node>();
-
-        LinkedList<Node> start = new LinkedList<Node>();
-        start.add(this);
-
-        searchQueue.add(start);
-
-        LinkedList<Node> path;
+        SearchFrontier frontier = SearchFrontier.acquire();
 
-        while((path = searchQueue.poll()) != null) {
+        try {
+            frontier.visit(this);
+            frontier.add(this, -1, 0);
 
-            Node lastNode = path.getLast();
+            for(int head = 0; head < frontier.size(); head++) {
+                Node lastNode = frontier.getNode(head);
 
-            examined.add(lastNode);
-
-            if (lastNode == destination) {
-                return path.size() - 1;
-            }
-
-            for(Node linkedNode: lastNode.getConnectedNodes(false)) {
-                if(!examined.contains(linkedNode)) {
-                    LinkedList<Node> newPath = new LinkedList<Node>(path);
-                    newPath.add(linkedNode);
+                if(lastNode == destination) {
+                    return frontier.getDepth(head);
+                }
 
-                    searchQueue.add(newPath);
+                for(Edge edge: lastNode.edges) {
+                    Node linkedNode = edge.getSrc() == lastNode ? edge.getDest() : edge.getSrc();
+                    if(frontier.visit(linkedNode)) {
+                        frontier.add(linkedNode, head, frontier.getDepth(head) + 1);
+                    }
                 }
             }
-        }
 
-        return 0;
+            return 0;
+        } finally {
+            frontier.release();
+        }
     }
 
 	//----------------------------------------
@@ -353,12 +499,43 @@ public class Node {
 	}
 
     public void addEdge(Edge e) {
-        if(!edges.contains(e)) {
-            edges.add(e);
+        NeighbourIndex index = getNeighbours();
+
+        if(index == null) {
+            if(!edges.contains(e)) {
+                edges.add(e);
+                invalidateSuccessors();
+            }
+            return;
+        }
+
+        Node neighbour = e.getSrc() == this ? e.getDest() : e.getSrc();
+        Edge existing = index.edges.get(neighbour);
+        boolean parallelEdges = index.parallelEdges;
+
+        if(existing == e) {
+            return;
+        } else if(existing == null) {
+            // Like the edge list, the map is only changed by the thread building the graph while nothing searches it.
+            index.edges.put(neighbour, e);
+        } else if(parallelEdges && edges.contains(e)) {
+            // The map only holds the first edge to each neighbour, so it cannot rule this one out.
+            return;
+        } else {
+            parallelEdges = true;
         }
+
+        edges.add(e);
+        neighbours = new NeighbourIndex(index.edges, edges.size(), parallelEdges);
+        invalidateSuccessors();
     }
 
     public Force calcSpringForce(Node that) {
+        return calcSpringForce(that, getDistanceTo(that));
+    }
+
+    // The spring force between two nodes the given number of edges apart.
+    Force calcSpringForce(Node that, float distance) {
        // System.out.println(this.getLabel() + " -> " + that.getLabel());
         float dx = Math.abs(this.x - that.x);
         float dy = Math.abs(this.y - that.y);
@@ -371,7 +548,6 @@ public class Node {
 
         float directionX = (this.x > that.x) ? -1 : 1;
         float directionY = (this.y > that.y) ? -1 : 1;
-        float distance = getDistanceTo(that);
 
         if(distance == 0) return new Force(0.0f, 0.0f);
 
@@ -404,14 +580,38 @@ public class Node {
         return (dx * dx) + (dy * dy);
     }
 
+    // Our velocity, for the layout kernel.
+    float getDx() {
+        return dx;
+    }
+
+    float getDy() {
+        return dy;
+    }
+
+    // Sets where the layout kernel has moved us to, and how fast we are going.
+    void move(float x, float y, float dx, float dy) {
+        this.x = x;
+        this.y = y;
+        this.dx = dx;
+        this.dy = dy;
+    }
 
+    // Is child one of our successors? See getConnectedNodes(true).
     public boolean hasChild(Node child) {
-        for(Node node: getConnectedNodes()) {
-            if(node == child) {
+        NeighbourIndex index = getNeighbours();
+
+        if(index != null && !index.parallelEdges && child != this) {
+            Edge e = index.edges.get(child);
+            return e != null && (e.getSrc() == this || !e.isDirected());
+        }
+
+        for(Edge e: edges) {
+            if(e.getSrc() == this ? e.getDest() == child : e.getSrc() == child && !e.isDirected()) {
                 return true;
             }
         }
-        
+
         return false;
     }
 
@@ -0,0 +1,250 @@
+/**
+ *  This file is part of OpenALP.
+ *
+ *  OpenALP is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  OpenALP is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ *
+ *  A Barnes-Hut quadtree over the positions of the nodes in a graph. Each cell knows
+ *  how many nodes it holds and their centre of mass, so a cluster of nodes far enough
+ *  away can pull on a node as if it were one heavy node at its centre. Summing the
+ *  force from every node then costs O(log N) instead of O(N).
+ *
+ *  The tree is built once per layout step over the step's snapshot of positions. Cells
+ *  live in flat arrays, and nothing changes once it is built, so any number of threads
+ *  can query it at once.
+ *
+ * @see         Graph#updateNodes()
+ **/
+
+package net.openalp.graph;
+
+class QuadTree {
+    // Below this a cell is not split any further, nodes on top of each other share it.
+    private static final float MIN_SIZE = 1e-4f;
+    private static final int EMPTY = -1;
+    private static final int SHARED = -2;
+
+    // The snapshot of positions, shared with the caller and read only.
+    private final float[] xs;
+    private final float[] ys;
+
+    private int cellCount;
+    private float[] left;
+    private float[] top;
+    private float[] size;
+    private float[] sumX;
+    private float[] sumY;
+    private int[] count;
+    // The four children of a cell start at children[cell], or -1 for a leaf.
+    private int[] children;
+    // The node in a leaf, EMPTY, or SHARED when several nodes are too close to separate.
+    private int[] body;
+
+    /**
+     * Builds a tree over a snapshot of node positions.
+     * @param xs The x of each node, which must not change while the tree is in use.
+     * @param ys The y of each node.
+     */
+    QuadTree(float[] xs, float[] ys) {
+        int n = xs.length;
+        this.xs = xs;
+        this.ys = ys;
+
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        int i;
+        for(i = 0; i < n; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+
+        int capacity = Math.max(16, n * 2);
+        left = new float[capacity];
+        top = new float[capacity];
+        size = new float[capacity];
+        sumX = new float[capacity];
+        sumY = new float[capacity];
+        count = new int[capacity];
+        children = new int[capacity];
+        body = new int[capacity];
+
+        float extent = n == 0 ? 1 : Math.max(Math.max(maxX - minX, maxY - minY), MIN_SIZE) * 1.001f;
+        newCell(minX, minY, extent);
+
+        for(i = 0; i < n; i++) {
+            insert(i);
+        }
+    }
+
+    int size() {
+        return xs.length;
+    }
+
+    /**
+     * Sums the force on a node from every other node, pulling nodes in clusters that look smaller than
+     * theta from the node as one. Each node pulls with the spring force for nodes distance edges
+     * apart, see Node.calcSpringForce.
+     * @param self The index of the node, which does not pull on itself.
+     * @param theta How small a cluster must look, its width over its distance, to be pulled on as one.
+     * @param stiffness springyness * springeynessFalloff ^ distance.
+     * @param length The length of the spring, springLength * (distance + springLengthExtra * (distance - 1)).
+     * @param net The x and y of the force are added to net[0] and net[1].
+     */
+    void force(int self, float theta, float stiffness, float length, float[] net) {
+        force(0, self, theta, stiffness, length, net);
+    }
+
+    // Recursive, so a query needs no scratch of its own. The tree is only as deep as MIN_SIZE allows.
+    private void force(int cell, int self, float theta, float stiffness, float length, float[] net) {
+        int nodes = count[cell];
+        if(nodes == 0) {
+            return;
+        }
+
+        float px = xs[self];
+        float py = ys[self];
+
+        if(children[cell] < 0) {
+            if(body[cell] >= 0) {
+                if(body[cell] != self) {
+                    pull(px, py, xs[body[cell]], ys[body[cell]], 1, stiffness, length, net);
+                }
+            } else {
+                // Nodes on top of each other, we may be one of them.
+                int others = nodes;
+                if(px >= left[cell] && px <= left[cell] + size[cell] && py >= top[cell] && py <= top[cell] + size[cell]) {
+                    others = nodes - 1;
+                }
+                pull(px, py, sumX[cell] / nodes, sumY[cell] / nodes, others, stiffness, length, net);
+            }
+            return;
+        }
+
+        float cx = sumX[cell] / nodes;
+        float cy = sumY[cell] / nodes;
+        float dx = cx - px;
+        float dy = cy - py;
+        float distance = (float)Math.sqrt(dx * dx + dy * dy);
+
+        if(size[cell] < theta * distance) {
+            pull(px, py, cx, cy, nodes, stiffness, length, net);
+        } else {
+            for(int c = 0; c < 4; c++) {
+                force(children[cell] + c, self, theta, stiffness, length, net);
+            }
+        }
+    }
+
+    // The same spring as Node.calcSpringForce, in vector form.
+    private static void pull(float px, float py, float qx, float qy, int mass, float stiffness, float length, float[] net) {
+        float dx = qx - px;
+        float dy = qy - py;
+        float squared = dx * dx + dy * dy;
+        if(squared == 0 || mass == 0) {
+            return;
+        }
+
+        float hyp = (float)Math.sqrt(squared);
+        float scale = mass * stiffness * (hyp - length) / squared;
+        net[0] += scale * dx;
+        net[1] += scale * dy;
+    }
+
+    private int newCell(float x, float y, float extent) {
+        if(cellCount == count.length) {
+            int grown = cellCount * 2;
+            left = grow(left, grown);
+            top = grow(top, grown);
+            size = grow(size, grown);
+            sumX = grow(sumX, grown);
+            sumY = grow(sumY, grown);
+            count = grow(count, grown);
+            children = grow(children, grown);
+            body = grow(body, grown);
+        }
+
+        left[cellCount] = x;
+        top[cellCount] = y;
+        size[cellCount] = extent;
+        sumX[cellCount] = 0;
+        sumY[cellCount] = 0;
+        count[cellCount] = 0;
+        children[cellCount] = -1;
+        body[cellCount] = EMPTY;
+        return cellCount++;
+    }
+
+    private void insert(int node) {
+        int cell = 0;
+        float x = xs[node];
+        float y = ys[node];
+
+        while(true) {
+            sumX[cell] += x;
+            sumY[cell] += y;
+            count[cell]++;
+
+            if(children[cell] < 0) {
+                if(count[cell] == 1) {
+                    body[cell] = node;
+                    return;
+                }
+
+                if(size[cell] < MIN_SIZE || body[cell] == SHARED) {
+                    body[cell] = SHARED;
+                    return;
+                }
+
+                // Split the leaf and push the node already here down a level.
+                int resident = body[cell];
+                body[cell] = EMPTY;
+                float half = size[cell] / 2;
+                int first = newCell(left[cell], top[cell], half);
+                newCell(left[cell] + half, top[cell], half);
+                newCell(left[cell], top[cell] + half, half);
+                newCell(left[cell] + half, top[cell] + half, half);
+                children[cell] = first;
+
+                int quadrant = quadrant(cell, xs[resident], ys[resident]);
+                sumX[quadrant] += xs[resident];
+                sumY[quadrant] += ys[resident];
+                count[quadrant] = 1;
+                body[quadrant] = resident;
+            }
+
+            cell = quadrant(cell, x, y);
+        }
+    }
+
+    private int quadrant(int cell, float x, float y) {
+        float half = size[cell] / 2;
+        int c = children[cell];
+        if(x >= left[cell] + half) c += 1;
+        if(y >= top[cell] + half) c += 2;
+        return c;
+    }
+
+    private static float[] grow(float[] array, int length) {
+        float[] grown = new float[length];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static int[] grow(int[] array, int length) {
+        int[] grown = new int[length];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ *  This file is part of OpenALP.
+ *
+ *  OpenALP is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  OpenALP is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ *
+ *  Knows which match keys can be reached from every node in a graph, as a bitset of
+ *  keys per node. Whether a node can reach anything a KeyedFilter matches is then a
+ *  couple of bit tests, so a search that is bound to fail never has to walk the graph.
+ *
+ *  A grammar has a few hundred signatures at most, however many nodes it has, so the
+ *  bitsets stay small. When a new edge lets a node reach keys it could not before,
+ *  they are pushed back through its predecessors until they reach nodes that already
+ *  had them, which in a grammar of any size is almost immediately.
+ *
+ *  A search for a keyed filter also uses the bitsets to steer itself, only stepping to
+ *  successors that match or that can still reach a match, so it heads straight for the
+ *  nearest match rather than flooding the graph around it.
+ *
+ *  Kept up to date by Graph as nodes are added and connected. The match key of a node
+ *  is read when it is added, so Graph builds a new index when any node changes its key.
+ *
+ * @see         Graph#findMatchingNode(Node, NodeFilter)
+ **/
+
+package net.openalp.graph;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+class ReachabilityIndex {
+    // The keys each node can reach in one step or more, by key id.
+    private final Map<Node, BitSet> reachable = new IdentityHashMap<Node, BitSet>();
+    private final Map<Integer, Integer> keyIds = new HashMap<Integer, Integer>();
+    // Node.getKeyChanges() when the keys were read.
+    private final int keyChanges = Node.getKeyChanges();
+
+    /**
+     * Indexes every node in a graph.
+     * @param nodes The nodes of the graph, which must not change while they are indexed.
+     */
+    ReachabilityIndex(Collection<Node> nodes) {
+        List<Node> order = new ArrayList<Node>(nodes);
+        for(Node node: order) {
+            add(node);
+        }
+
+        // Each node reaches the keys of its successors and everything they reach. Going backwards
+        // through the order nodes were added in, most nodes are done in the first pass.
+        boolean changed = true;
+        while(changed) {
+            changed = false;
+
+            for(int n = order.size() - 1; n >= 0; n--) {
+                BitSet keys = reachable.get(order.get(n));
+                int before = keys.cardinality();
+
+                for(Node successor: order.get(n).getSuccessors()) {
+                    BitSet successorKeys = reachable.get(successor);
+                    if(successorKeys != null) {
+                        keys.set(keyIds.get(successor.getMatchKey()));
+                        keys.or(successorKeys);
+                    }
+                }
+
+                changed |= keys.cardinality() != before;
+            }
+        }
+    }
+
+    /**
+     * Adds a node that cannot reach anything yet.
+     * @param node The new node.
+     */
+    synchronized void add(Node node) {
+        if(reachable.containsKey(node)) {
+            return;
+        }
+
+        reachable.put(node, new BitSet());
+        if(!keyIds.containsKey(node.getMatchKey())) {
+            keyIds.put(node.getMatchKey(), keyIds.size());
+        }
+    }
+
+    /**
+     * Records that src can now step to dest, so src and everything that reaches it can also
+     * reach dest's key and every key dest reaches.
+     * @param src The node the step leaves.
+     * @param dest The node the step arrives at.
+     */
+    synchronized void connect(Node src, Node dest) {
+        add(src);
+        add(dest);
+
+        BitSet gained = (BitSet)reachable.get(dest).clone();
+        gained.set(keyIds.get(dest.getMatchKey()));
+
+        LinkedList<Node> queue = new LinkedList<Node>();
+        queue.add(src);
+
+        Node node;
+        while((node = queue.poll()) != null) {
+            BitSet keys = reachable.get(node);
+            if(keys == null) {
+                // Not part of the graph.
+                continue;
+            }
+
+            BitSet missing = (BitSet)gained.clone();
+            missing.andNot(keys);
+            if(missing.isEmpty()) {
+                // It already reaches them, so everything that reaches it does too.
+                continue;
+            }
+            keys.or(missing);
+
+            for(Edge edge: node.getEdges()) {
+                if(edge.getDest() == node) {
+                    queue.add(edge.getSrc());
+                } else if(!edge.isDirected()) {
+                    queue.add(edge.getDest());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if a node has changed its match key since the index was built, so it must be rebuilt.
+     */
+    boolean isStale() {
+        return Node.getKeyChanges() != keyChanges;
+    }
+
+    /**
+     * Searches outwards from a node for the nearest node matching a filter, as
+     * Node.findMatchingNode(filter, true) does, but never steps to a node that neither
+     * matches nor can reach a match. Every node on the way to the nearest match can reach
+     * it, so the same node is found.
+     *
+     * Like the edges of the graph, the index is only changed while nothing is searching,
+     * so the search reads it without holding the lock.
+     * @param from Where the search starts, it is not counted unless it can reach itself.
+     * @param filter What the search is looking for.
+     * @return The nearest matching node, or null if there is none.
+     */
+    Node findMatchingNode(Node from, KeyedFilter filter) {
+        BitSet keys = reachable.get(from);
+        if(keys == null) {
+            // We know nothing about it, so let the search find its own way.
+            return from.findMatchingNode(filter, true);
+        }
+
+        BitSet wanted = new BitSet();
+        for(int k = 0; k < filter.getKeyCount(); k++) {
+            Integer id = keyIds.get(filter.getKey(k));
+            if(id != null) {
+                wanted.set(id);
+            }
+        }
+
+        if(!keys.intersects(wanted)) {
+            return null;
+        }
+
+        SearchFrontier frontier = SearchFrontier.acquire();
+
+        try {
+            // We are not marked as seen, so a loop back to us can still match.
+            for(Node node: from.getSuccessors()) {
+                if(isWorthVisiting(node, filter, wanted) && frontier.visit(node)) {
+                    frontier.add(node, -1, 1);
+                }
+            }
+
+            for(int head = 0; head < frontier.size(); head++) {
+                Node node = frontier.getNode(head);
+
+                if(filter.matches(node)) {
+                    return node;
+                }
+
+                for(Node successor: node.getSuccessors()) {
+                    if(isWorthVisiting(successor, filter, wanted) && frontier.visit(successor)) {
+                        frontier.add(successor, head, frontier.getDepth(head) + 1);
+                    }
+                }
+            }
+
+            return null;
+        } finally {
+            frontier.release();
+        }
+    }
+
+    // Could stepping to the node find anything? Nodes we know nothing about might.
+    private boolean isWorthVisiting(Node node, KeyedFilter filter, BitSet wanted) {
+        BitSet keys = reachable.get(node);
+        return keys == null || keys.intersects(wanted) || filter.matches(node);
+    }
+}
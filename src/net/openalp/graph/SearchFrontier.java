@@ -0,0 +1,205 @@
+/**
+ *  This file is part of OpenALP.
+ *
+ *  OpenALP is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  OpenALP is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ *
+ *  The working memory of a breadth first search. Every node reached is appended to
+ *  the frontier once, along with the index of the entry it was reached from and its
+ *  depth, so a path is only built when the search has found what it is looking for.
+ *
+ *  The nodes already seen are kept in an identity hash table. Forgetting them only
+ *  bumps a mark, so a search that needs a fresh visited set for every depth pays
+ *  nothing for it. Releasing the frontier clears only the slots the search used, so
+ *  a small search on a big graph stays cheap.
+ *
+ *  Each thread reuses one frontier, so a search allocates nothing once the arrays
+ *  have grown to fit the graph.
+ *
+ * @see         Node#getMatchedPath(java.util.List)
+ **/
+
+package net.openalp.graph;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+final class SearchFrontier {
+    private static final int INITIAL_SIZE = 64;
+    private static final ThreadLocal<SearchFrontier> frontiers = new ThreadLocal<SearchFrontier>() {
+        protected SearchFrontier initialValue() {
+            return new SearchFrontier();
+        }
+    };
+
+    private Node[] nodes = new Node[INITIAL_SIZE];
+    private int[] parents = new int[INITIAL_SIZE];
+    private int[] depths = new int[INITIAL_SIZE];
+    private int size;
+
+    // Open addressing on identity, a slot is only in use while it holds the current mark.
+    private Node[] seen = new Node[INITIAL_SIZE * 2];
+    private int[] marks = new int[INITIAL_SIZE * 2];
+    private int mark = 1;
+    private int seenCount;
+    // Slots that have held a node since the last release, so only those need clearing.
+    private int[] touched = new int[INITIAL_SIZE * 2];
+    private int touchedCount;
+    private boolean busy;
+
+    private SearchFrontier() {}
+
+    /**
+     * @return An empty frontier for this thread, or a new one if a search is already running on it.
+     */
+    static SearchFrontier acquire() {
+        SearchFrontier frontier = frontiers.get();
+        if(frontier.busy) {
+            frontier = new SearchFrontier();
+        }
+        frontier.busy = true;
+        return frontier;
+    }
+
+    /**
+     * Empties the frontier so it can be reused. Drops every node so the graph is not kept alive.
+     */
+    void release() {
+        Arrays.fill(nodes, 0, size, null);
+        for(int i = 0; i < touchedCount; i++) {
+            seen[touched[i]] = null;
+        }
+        touchedCount = 0;
+        size = 0;
+        forget();
+        busy = false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Node getNode(int entry) {
+        return nodes[entry];
+    }
+
+    int getDepth(int entry) {
+        return depths[entry];
+    }
+
+    /**
+     * Appends a node to the frontier.
+     * @param node The node reached.
+     * @param parent The entry it was reached from, or -1 for where the search starts.
+     * @param depth The number of steps from the start.
+     * @return The entry of the node.
+     */
+    int add(Node node, int parent, int depth) {
+        if(size == nodes.length) {
+            nodes = grow(nodes, size * 2);
+            parents = grow(parents, size * 2);
+            depths = grow(depths, size * 2);
+        }
+
+        nodes[size] = node;
+        parents[size] = parent;
+        depths[size] = depth;
+        return size++;
+    }
+
+    /**
+     * Marks a node as seen.
+     * @param node The node.
+     * @return false if it had already been seen since the last call to forget().
+     */
+    boolean visit(Node node) {
+        if((seenCount + 1) * 2 > seen.length) {
+            rehash(seen.length * 2);
+        }
+
+        int m = seen.length - 1;
+        for(int slot = System.identityHashCode(node) & m; marks[slot] == mark; slot = (slot + 1) & m) {
+            if(seen[slot] == node) {
+                return false;
+            }
+        }
+
+        insert(node);
+        seenCount++;
+        return true;
+    }
+
+    /**
+     * Forgets every node seen so far.
+     */
+    void forget() {
+        seenCount = 0;
+        if(++mark == 0) {
+            // Wrapped around, old marks could look current again.
+            Arrays.fill(marks, 0);
+            mark = 1;
+        }
+    }
+
+    /**
+     * @param entry An entry in the frontier.
+     * @return Every node from where the search started to the entry.
+     */
+    LinkedList<Node> getPath(int entry) {
+        LinkedList<Node> path = new LinkedList<Node>();
+        for(int i = entry; i >= 0; i = parents[i]) {
+            path.addFirst(nodes[i]);
+        }
+        return path;
+    }
+
+    private void insert(Node node) {
+        int m = seen.length - 1;
+        int slot = System.identityHashCode(node) & m;
+        while(marks[slot] == mark) {
+            slot = (slot + 1) & m;
+        }
+        if(seen[slot] == null) {
+            touched[touchedCount++] = slot;
+        }
+        seen[slot] = node;
+        marks[slot] = mark;
+    }
+
+    private void rehash(int capacity) {
+        Node[] oldSeen = seen;
+        int[] oldMarks = marks;
+        seen = new Node[capacity];
+        marks = new int[capacity];
+        touched = new int[capacity];
+        touchedCount = 0;
+
+        for(int i = 0; i < oldSeen.length; i++) {
+            if(oldMarks[i] == mark) {
+                insert(oldSeen[i]);
+            }
+        }
+    }
+
+    private static Node[] grow(Node[] array, int length) {
+        Node[] grown = new Node[length];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static int[] grow(int[] array, int length) {
+        int[] grown = new int[length];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
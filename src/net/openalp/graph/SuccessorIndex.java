@@ -0,0 +1,109 @@
+/**
+ *  This file is part of OpenALP.
+ *
+ *  OpenALP is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  OpenALP is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ *
+ *  The nodes reachable from a node, grouped by their match key so the successors a
+ *  KeyedFilter can match are found with one hash probe. Immutable, a node builds a new
+ *  one whenever its edges change.
+ *
+ * @see         Node#getSuccessors(int)
+ **/
+
+package net.openalp.graph;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class SuccessorIndex {
+    static final Node[] NONE = new Node[0];
+
+    // Every successor, in edge order.
+    final Node[] all;
+    // The number of edges the index was built from, to spot edges added behind our back.
+    final int edgeCount;
+    private final int[] keys;
+    private final Node[][] groups;
+    private final int mask;
+
+    SuccessorIndex(Node owner) {
+        List<Edge> edges = owner.getEdges();
+        List<Node> successors = new ArrayList<Node>(edges.size());
+        Map<Integer, List<Node>> byKey = new LinkedHashMap<Integer, List<Node>>();
+
+        for(Edge edge: edges) {
+            Node successor;
+            if(edge.getSrc() == owner) {
+                successor = edge.getDest();
+            } else if(edge.getDest() == owner && !edge.isDirected()) {
+                successor = edge.getSrc();
+            } else {
+                continue;
+            }
+
+            successors.add(successor);
+
+            List<Node> group = byKey.get(successor.getMatchKey());
+            if(group == null) {
+                group = new ArrayList<Node>(1);
+                byKey.put(successor.getMatchKey(), group);
+            }
+            group.add(successor);
+        }
+
+        all = successors.toArray(new Node[successors.size()]);
+        edgeCount = edges.size();
+
+        int size = 2;
+        while(size < byKey.size() * 2) {
+            size *= 2;
+        }
+        mask = size - 1;
+        keys = new int[size];
+        groups = new Node[size][];
+
+        for(Map.Entry<Integer, List<Node>> entry: byKey.entrySet()) {
+            int slot = slot(entry.getKey());
+            while(groups[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = entry.getKey();
+            groups[slot] = entry.getValue().toArray(new Node[entry.getValue().size()]);
+        }
+    }
+
+    private int slot(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * @param key A match key.
+     * @return Every successor with the key. Must not be modified.
+     */
+    Node[] get(int key) {
+        int slot = slot(key);
+
+        while(groups[slot] != null) {
+            if(keys[slot] == key) {
+                return groups[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return NONE;
+    }
+}
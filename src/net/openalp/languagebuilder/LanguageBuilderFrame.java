@@ -63,11 +63,14 @@ public class LanguageBuilderFrame extends JFrame {
         console.addCommandListener(new Define(lexicon));
         console.addCommandListener(new Exit());
         console.addCommandListener(new Help());
+        console.addCommandListener(new Import(lexicon));
+        console.addCommandListener(new Reload(lexicon));
         console.addCommandListener(new Remove(lexicon));
         console.addCommandListener(new Reset(grammar));
         console.addCommandListener(new Search(lexicon));
         console.addCommandListener(new Test(grammar));
         console.addCommandListener(new Train(grammar));
+        console.addCommandListener(new Use(grammar, lexicon));
         console.addCommandListener(new Set());
         console.addCommandListener(new Save(grammar));
         console.addCommandListener(new Load(this));
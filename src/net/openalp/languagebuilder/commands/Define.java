@@ -42,7 +42,7 @@ public class Define implements CommandListener {
         int perspectiveMask = Integer.parseInt(argv[3]);
         int tenseMask = Integer.parseInt(argv[4]);
 
-        lexicon.add(new Token(argv[1], argv[2], (perspectiveMask & 4) == 4, (perspectiveMask & 2) == 2,(perspectiveMask & 1) == 1,
-                                                (tenseMask & 4)       == 4, (tenseMask & 2)       == 2, (tenseMask & 1)      == 1));
+        // Phrases are written with underscores, as in_front_of, since the console splits on spaces.
+        lexicon.add(new Token(argv[1].replace('_', ' '), argv[2], perspectiveMask, tenseMask));
     }
 }
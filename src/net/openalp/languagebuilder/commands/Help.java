@@ -33,11 +33,17 @@ public class Help implements CommandListener {
     public void runCommand(Console console, String[] argv, int argc) {
         System.out.println("::help::");
         System.out.println("  add (sentance) - Create a new path in the grammar");
-        System.out.println("  define (word) (type) (perspectiveMask) (tenseMask) - Create a word in the dictionary");
+        System.out.println("  define (word) (type) (perspectiveMask) (tenseMask) - Create a word in the dictionary, use underscores for phrases like in_front_of");
+        System.out.println("  import (filename) - Imports a word list into the dictionary, one 'word, type, perspectiveMask, tenseMask' per line");
+        System.out.println("  load (filename) - Loads a saved grammar, files ending in .oagc are in the compact format");
+        System.out.println("  reload - Reloads the dictionary from disk, picking up changes made by other programs");
         System.out.println("  remove (word) - Removes a word from the dictionary");
+        System.out.println("  save (filename) - Saves the grammar, in the compact format if the filename ends in .oagc");
         System.out.println("  search (word) - Finds a word in the dictionary");
+        System.out.println("  search (pattern) (page) - Lists words matching a pattern, * matches anything and ? any one letter");
         System.out.println("  test (filename) - Runs the given test file through the grammar");
         System.out.println("  train (filename) - Runs the given file into the parser building the grammar");
+        System.out.println("  use (database|compiled) (filename) - Chooses where words are looked up, compiled is a read only copy of the dictionary");
         System.out.println("  help - Displays this message");
     }
 }
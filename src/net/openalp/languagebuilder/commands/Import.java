@@ -0,0 +1,73 @@
+package net.openalp.languagebuilder.commands;
+
+import net.openalp.generic.swing.CommandListener;
+import net.openalp.generic.swing.Console;
+import net.openalp.core.LexiconDAO;
+
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Imports a word list into the lexicon.
+ *
+ * @see LexiconDAO#importWords(java.io.Reader)
+ */
+public class Import implements CommandListener {
+    private LexiconDAO lexicon;
+
+    public Import(LexiconDAO lexicon) {
+        this.lexicon = lexicon;
+    }
+
+    public String getCommand() {
+        return "import";
+    }
+
+    public void runCommand(Console console, String[] argv, int argc) {
+        if(argv.length < 2) {
+            System.out.println("import (filename) - one word per line as: word, type, perspectiveMask, tenseMask");
+            return;
+        }
+
+        String filename = "data/" + argv[1];
+        long start = System.currentTimeMillis();
+
+        try {
+            FileReader source = new FileReader(filename);
+            int imported;
+
+            try {
+                imported = lexicon.importWords(source);
+            } finally {
+                source.close();
+            }
+
+            float seconds = Math.max(System.currentTimeMillis() - start, 1) / 1000.0f;
+            System.out.println("Imported " + imported + " words in " + seconds + "s (" + Math.round(imported / seconds) + " rows/s)");
+        } catch(FileNotFoundException e) {
+            System.out.println("Cannot find word list '" + filename + "': " + e.getMessage());
+        } catch(IOException e) {
+            System.out.println("Error reading word list '" + filename + "': " + e.getMessage());
+        } catch(SQLException e) {
+            System.out.println("Error importing word list '" + filename + "': " + e.getMessage());
+        }
+    }
+}
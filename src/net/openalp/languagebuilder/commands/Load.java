@@ -1,5 +1,7 @@
 package net.openalp.languagebuilder.commands;
 
+import net.openalp.core.encoding.CompactGrammarDecoder;
+import net.openalp.core.encoding.CompactGrammarEncoder;
 import net.openalp.core.encoding.GrammarDecoder;
 import net.openalp.core.Grammar;
 import net.openalp.generic.swing.Console;
@@ -33,7 +35,12 @@ public class Load implements CommandListener {
         if(argv.length > 1) {
 
             filename = argv[1];
-            grammar = (Grammar)loader.load(FILEPATH + filename);
+            if (filename.endsWith(CompactGrammarEncoder.EXTENSION)) {
+                grammar = new CompactGrammarDecoder(frame.getGrammar().getLexicon()).load(FILEPATH + filename);
+            }
+            else {
+                grammar = (Grammar)loader.load(FILEPATH + filename);
+            }
 
             if (grammar != null) {
                 EventQueue.invokeLater(new Runnable() {
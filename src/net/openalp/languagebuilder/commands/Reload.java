@@ -0,0 +1,49 @@
+package net.openalp.languagebuilder.commands;
+
+import net.openalp.generic.swing.CommandListener;
+import net.openalp.generic.swing.Console;
+import net.openalp.core.LexiconDAO;
+
+import java.sql.SQLException;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Reloads the lexicon from disk, picking up changes made to the database by other programs.
+ *
+ * @see LexiconDAO#reload()
+ */
+public class Reload implements CommandListener {
+    private LexiconDAO lexicon;
+
+    public Reload(LexiconDAO lexicon) {
+        this.lexicon = lexicon;
+    }
+
+    public String getCommand() {
+        return "reload";
+    }
+
+    public void runCommand(Console console, String[] argv, int argc) {
+        try {
+            int changed = lexicon.reload();
+            System.out.println("Reloaded lexicon, " + changed + " words changed (version " + lexicon.getVersion() + ")");
+        } catch(SQLException e) {
+            System.out.println("Error reloading lexicon: " + e.getMessage());
+        }
+    }
+}
@@ -38,6 +38,6 @@ public class Remove implements CommandListener {
     }
 
     public void runCommand(Console console, String[] argv, int argc) {
-        lexicon.remove(argv[1]);
+        lexicon.remove(argv[1].replace('_', ' '));
     }
 }
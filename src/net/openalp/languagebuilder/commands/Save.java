@@ -3,6 +3,7 @@ package net.openalp.languagebuilder.commands;
 import net.openalp.generic.swing.CommandListener;
 import net.openalp.generic.swing.Console;
 import net.openalp.core.Grammar;
+import net.openalp.core.encoding.CompactGrammarEncoder;
 import net.openalp.core.encoding.GrammarEncoder;
 
 /**
@@ -13,10 +14,12 @@ import net.openalp.core.encoding.GrammarEncoder;
  */
 public class Save implements CommandListener {
     private GrammarEncoder saver;
+    private CompactGrammarEncoder compactSaver;
      private final String FILEPATH = "./data/";
 
     public Save(Grammar grammar) {
         saver = new GrammarEncoder(grammar);
+        compactSaver = new CompactGrammarEncoder(grammar);
     }
 
     public String getCommand() {
@@ -25,7 +28,15 @@ public class Save implements CommandListener {
 
     public void runCommand(Console console, String[] argv, int argc) {
         if(argv.length > 1) {
-            if (saver.save(FILEPATH + argv[1])) {
+            boolean saved;
+            if (argv[1].endsWith(CompactGrammarEncoder.EXTENSION)) {
+                saved = compactSaver.save(FILEPATH + argv[1]);
+            }
+            else {
+                saved = saver.save(FILEPATH + argv[1]);
+            }
+
+            if (saved) {
                 System.out.println("\n" + argv[1] + " saved.");
             }
             else {
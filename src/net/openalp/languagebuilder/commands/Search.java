@@ -3,6 +3,10 @@ package net.openalp.languagebuilder.commands;
 import net.openalp.generic.swing.CommandListener;
 import net.openalp.generic.swing.Console;
 import net.openalp.core.LexiconDAO;
+import net.openalp.core.LexiconTrie;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This file is part of OpenALP.
@@ -21,12 +25,14 @@ import net.openalp.core.LexiconDAO;
  * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
  * <p/>
  *
- * Searches for a word in the lexicon.
+ * Searches for a word in the lexicon. Patterns with wildcards ('*' for any run of
+ * characters, '?' for any single character) list the matching words a page at a time.
  *
  * @author Adam Scarr
  * @since r37
  */
 public class Search implements CommandListener {
+    private static final int PAGE_SIZE = 50;
     LexiconDAO lexicon;
 
     public Search(LexiconDAO lexicon) {
@@ -38,11 +44,53 @@ public class Search implements CommandListener {
     }
 
     public void runCommand(Console console, String[] argv, int argc) {
-        if(argv.length > 1) {
-            System.out.println(lexicon.get(argv[1]));
-        } else {
-            System.out.println("Please give a word to search for from the lexicon:");
-            System.out.println(lexicon);
+        if(argv.length < 2) {
+            System.out.println("Please give a word or pattern to search for from the lexicon, eg: search cat, search ca* or search c?t");
+            System.out.println("The first page of the lexicon:");
+        }
+
+        final String pattern = argv.length > 1 ? argv[1] : String.valueOf(LexiconTrie.ANY_SEQUENCE);
+
+        if(pattern.indexOf(LexiconTrie.ANY_SEQUENCE) < 0 && pattern.indexOf(LexiconTrie.ANY_CHARACTER) < 0) {
+            System.out.println(lexicon.get(pattern));
+            return;
+        }
+
+        int page = 1;
+        if(argv.length > 2) {
+            try {
+                // Far enough that the words to skip still fit in an int.
+                page = Math.min(Math.max(1, Integer.parseInt(argv[2])), Integer.MAX_VALUE / PAGE_SIZE);
+            } catch(NumberFormatException e) {
+                System.out.println("search (pattern) (page)");
+                return;
+            }
+        }
+
+        // Ask for one more than a page to find out if there is another page. The words are printed
+        // once the search is done, the trie is locked while it searches and printing can be slow.
+        final List<String> words = new ArrayList<String>(PAGE_SIZE + 1);
+        try {
+            lexicon.getIndex().search(pattern, (page - 1) * PAGE_SIZE, PAGE_SIZE + 1, new LexiconTrie.Visitor() {
+                public boolean visit(String word) {
+                    words.add(word);
+                    return true;
+                }
+            });
+        } catch(IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+
+        int found = words.size();
+        for(String word: words.subList(0, Math.min(found, PAGE_SIZE))) {
+            System.out.println(word);
+        }
+
+        if(found > PAGE_SIZE) {
+            System.out.println("More results: search " + pattern + " " + (page + 1));
+        } else if(found == 0) {
+            System.out.println("No words match '" + pattern + "'");
         }
     }
 }
@@ -0,0 +1,82 @@
+package net.openalp.languagebuilder.commands;
+
+import net.openalp.generic.swing.CommandListener;
+import net.openalp.generic.swing.Console;
+import net.openalp.core.Grammar;
+import net.openalp.core.LexiconCompiler;
+import net.openalp.core.LexiconDAO;
+import net.openalp.core.MappedLexicon;
+import net.openalp.core.Token;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Chooses where the grammar looks words up. The database can be changed with define,
+ * import and remove. The compiled lexicon is a read only copy of it, mapped straight
+ * from disk, which is quicker to open and search and keeps big dictionaries off the heap.
+ * Editing commands always change the database, so the compiled copy only sees them once
+ * it is compiled again.
+ *
+ * @see MappedLexicon
+ */
+public class Use implements CommandListener {
+    private Grammar grammar;
+    private LexiconDAO database;
+
+    public Use(Grammar grammar, LexiconDAO database) {
+        this.grammar = grammar;
+        this.database = database;
+    }
+
+    public String getCommand() {
+        return "use";
+    }
+
+    public void runCommand(Console console, String[] argv, int argc) {
+        if(argv.length < 2) {
+            System.out.println("Using the " + (grammar.getLexicon() instanceof MappedLexicon ? "compiled" : "database") + " lexicon.");
+            System.out.println("use database - Looks words up in the database");
+            System.out.println("use compiled (filename) - Compiles the database and looks words up in the compiled copy");
+            return;
+        }
+
+        if(argv[1].equalsIgnoreCase("database")) {
+            grammar.setLexicon(database);
+            System.out.println("Using the database lexicon.");
+        } else if(argv[1].equalsIgnoreCase("compiled")) {
+            String filename = argv.length > 2 ? "data/" + argv[2] : MappedLexicon.DEFAULT_FILE;
+            List<Token> tokens = database.readAll();
+            if(tokens == null) {
+                System.out.println("Error reading the database, still using the " + (grammar.getLexicon() instanceof MappedLexicon ? "compiled" : "database") + " lexicon.");
+                return;
+            }
+
+            try {
+                int words = LexiconCompiler.compile(tokens, filename);
+                grammar.setLexicon(new MappedLexicon(filename));
+                System.out.println("Compiled " + words + " words into '" + filename + "', using the compiled lexicon.");
+            } catch(IOException e) {
+                System.out.println("Error compiling lexicon: " + e.getMessage());
+            }
+        } else {
+            System.out.println("Unknown lexicon '" + argv[1] + "', use database or compiled.");
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package net.openalp.test;
+
+import java.util.Random;
+import net.openalp.graph.Edge;
+import net.openalp.graph.Graph;
+import net.openalp.graph.Node;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Times a layout step done node by node with Node.updatePosition, which finds the distance
+ * to every other node with a search and works each spring out with Force objects, against
+ * Graph.updateNodes, which steps every node at once through the layout kernel.
+ *
+ * The kernel is also timed on a graph shaped like a grammar, where every sentence runs
+ * from one START node to one END node, so those two nodes have an edge for every
+ * sentence. Hubs like these are the worst case for the Barnes-Hut layout.
+ *
+ * Usage: LayoutBenchmark [steps] [sizes...]
+ */
+public class LayoutBenchmark {
+    // Node by node is cubic in the size of the graph, so it is only timed on the smaller ones.
+    private static final int MAX_NODE_BY_NODE = 400;
+
+    public static void main(String[] args) {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        // Time every node, even ones that would have settled.
+        Graph.settleThreshold = 0;
+        int[] sizes = {100, 200, 400, 800, 1600};
+        if(args.length > 1) {
+            sizes = new int[args.length - 1];
+            for(int i = 1; i < args.length; i++) {
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println("nodes\tNode.updatePosition ms/step\tGraph.updateNodes ms/step\tgrammar shaped ms/step");
+        for(int size: sizes) {
+            String nodeByNode = "-";
+            if(size <= MAX_NODE_BY_NODE) {
+                nodeByNode = String.format("%.2f", timeNodeByNode(createGraph(size), steps));
+            }
+
+            String kernel = String.format("%.2f", timeKernel(createGraph(size), steps));
+            String grammar = String.format("%.2f", timeKernel(createGrammarGraph(size), steps));
+            System.out.println(size + "\t" + nodeByNode + "\t" + kernel + "\t" + grammar);
+        }
+    }
+
+    // Sentences of three to eight words from START to END. Each word is usually a new node, but
+    // sometimes one an earlier sentence used, as when a grammar merges sentences.
+    private static Graph createGrammarGraph(int size) {
+        Random random = new Random(size);
+        Graph graph = new Graph();
+        Node start = graph.createNode();
+        Node end = graph.createNode();
+
+        while(graph.size() < size) {
+            Node last = start;
+            int words = 3 + random.nextInt(6);
+
+            for(int i = 0; i < words && graph.size() < size; i++) {
+                Node word = random.nextInt(5) == 0 ? graph.getNode(2 + random.nextInt(Math.max(1, graph.size() - 2))) : graph.createNode();
+                if(word != last && word != start && word != end) {
+                    graph.connect(new Edge(last, word));
+                    last = word;
+                }
+            }
+            graph.connect(new Edge(last, end));
+        }
+
+        for(Node node: graph.getNodes()) {
+            node.setX(random.nextFloat() * 20);
+            node.setY(random.nextFloat() * 20);
+        }
+
+        return graph;
+    }
+
+    // The same random graph every time, a tree with a quarter as many edges again to make loops.
+    private static Graph createGraph(int size) {
+        Random random = new Random(size);
+        Graph graph = new Graph();
+
+        for(int i = 0; i < size; i++) {
+            Node node = graph.createNode();
+            node.setX(random.nextFloat() * 20);
+            node.setY(random.nextFloat() * 20);
+
+            if(i > 0) {
+                graph.connect(new Edge(node, graph.getNode(random.nextInt(i))));
+            }
+            if(i > 1 && random.nextInt(4) == 0) {
+                graph.connect(new Edge(node, graph.getNode(random.nextInt(i))));
+            }
+        }
+
+        return graph;
+    }
+
+    private static double timeNodeByNode(Graph graph, int steps) {
+        // One step to warm up.
+        for(Node node: graph.getNodes()) node.updatePosition(graph.getNodes());
+
+        long start = System.nanoTime();
+        for(int step = 0; step < steps; step++) {
+            for(Node node: graph.getNodes()) node.updatePosition(graph.getNodes());
+        }
+        return (System.nanoTime() - start) / 1e6 / steps;
+    }
+
+    private static double timeKernel(Graph graph, int steps) {
+        // Also measures the distances, which later steps reuse.
+        graph.updateNodes();
+
+        long start = System.nanoTime();
+        for(int step = 0; step < steps; step++) {
+            graph.updateNodes();
+        }
+        return (System.nanoTime() - start) / 1e6 / steps;
+    }
+}
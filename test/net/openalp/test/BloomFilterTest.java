@@ -0,0 +1,87 @@
+package net.openalp.test;
+
+import net.openalp.core.BloomFilter;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Checks the unknown word filter never turns away a word it holds, keeps close to the
+ * false positive rate it was sized for, and keeps its statistics when it is replaced.
+ */
+public class BloomFilterTest {
+    private static final int WORDS = 10000;
+
+    private static BloomFilter fill(int words) {
+        BloomFilter filter = new BloomFilter(words, 0.01);
+        for(int i = 0; i < words; i++) {
+            filter.add("word" + i);
+        }
+        return filter;
+    }
+
+    @Test
+    public void holdsEveryWordAdded() {
+        BloomFilter filter = fill(WORDS);
+
+        assertEquals(WORDS, filter.size());
+        for(int i = 0; i < WORDS; i++) {
+            assertTrue(filter.mightContain("word" + i));
+        }
+    }
+
+    @Test
+    public void findsWordsInsideLongerText() {
+        BloomFilter filter = fill(10);
+
+        assertTrue(filter.mightContain("the word7 is here", 4, 9));
+        assertFalse(filter.mightContain("the word7 is here", 0, 3));
+    }
+
+    @Test
+    public void keepsCloseToItsFalsePositiveRate() {
+        BloomFilter filter = fill(WORDS);
+        int falsePositives = 0;
+
+        for(int i = 0; i < WORDS; i++) {
+            if(filter.mightContain("other" + i)) {
+                filter.recordFalsePositive();
+                falsePositives++;
+            }
+        }
+
+        assertEquals(0.01, filter.getExpectedFalsePositiveRate(), 0.002);
+        assertTrue("Too many false positives: " + falsePositives, falsePositives < WORDS * 0.02);
+        assertEquals(falsePositives, filter.getFalsePositives());
+        assertEquals(WORDS - falsePositives, filter.getRejected());
+    }
+
+    @Test
+    public void carriesStatisticsToItsReplacement() {
+        BloomFilter old = fill(10);
+        old.mightContain("missing");
+        old.recordFalsePositive();
+
+        BloomFilter replacement = fill(10);
+        replacement.inheritStatistics(old);
+
+        assertEquals(old.getRejected(), replacement.getRejected());
+        assertEquals(1, replacement.getFalsePositives());
+    }
+}
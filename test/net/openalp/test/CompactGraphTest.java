@@ -0,0 +1,215 @@
+package net.openalp.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import net.openalp.core.Grammar;
+import net.openalp.core.GrammarEdge;
+import net.openalp.core.GrammarNode;
+import net.openalp.core.Sentence;
+import net.openalp.core.Token;
+import net.openalp.core.encoding.CompactGrammarDecoder;
+import net.openalp.core.encoding.CompactGrammarEncoder;
+import net.openalp.graph.CompactGraph;
+import net.openalp.graph.Edge;
+import net.openalp.graph.Graph;
+import net.openalp.graph.Node;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Checks a graph survives being copied into a CompactGraph, written, read back and turned
+ * into objects again, and that a grammar saved in the compact format validates the same
+ * sentences once it is loaded.
+ */
+public class CompactGraphTest {
+    // A small graph with a loop, an undirected edge and a node on its own.
+    private static Graph createGraph() {
+        Graph graph = new Graph();
+        Node a = graph.createNode();
+        Node b = graph.createNode();
+        Node c = graph.createNode();
+        Node d = graph.createNode();
+        graph.createNode();
+
+        graph.connect(new Edge(a, b));
+        graph.connect(new Edge(b, c));
+        graph.connect(new Edge(c, a));
+        graph.connect(new Edge(c, d, false));
+        return graph;
+    }
+
+    private static CompactGraph copy(CompactGraph graph) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        graph.write(out);
+        out.close();
+        return CompactGraph.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    private static Sentence sentence(String... types) {
+        Sentence sentence = new Sentence();
+        for(String type: types) {
+            sentence.add(new Token(type.toLowerCase(), type, 7, 7));
+        }
+        return sentence;
+    }
+
+    @Test
+    public void followsEdgesTheWayNodesDo() {
+        Graph graph = createGraph();
+        CompactGraph compact = new CompactGraph(graph);
+
+        assertEquals(graph.size(), compact.getNodeCount());
+        assertEquals(4, compact.getEdgeCount());
+
+        for(int n = 0; n < compact.getNodeCount(); n++) {
+            int[] successors = new int[compact.getDegree(n)];
+            int count = compact.getSuccessors(n, successors);
+            List<Node> expected = graph.getNode(n).getConnectedNodes(true);
+
+            assertEquals(expected.size(), count);
+            for(int i = 0; i < count; i++) {
+                assertTrue(expected.contains(graph.getNode(successors[i])));
+            }
+
+            for(int m = 0; m < compact.getNodeCount(); m++) {
+                assertEquals(graph.getNode(n).getDistanceTo(graph.getNode(m)), compact.getDistance(n, m));
+            }
+        }
+    }
+
+    @Test
+    public void readsBackWhatItWrote() throws IOException {
+        CompactGraph compact = new CompactGraph(createGraph());
+        CompactGraph read = copy(compact);
+
+        assertEquals(compact.getNodeCount(), read.getNodeCount());
+        assertEquals(compact.getEdgeCount(), read.getEdgeCount());
+        for(int n = 0; n < compact.getNodeCount(); n++) {
+            assertEquals(compact.getKey(n), read.getKey(n));
+            assertEquals(compact.getFirstEdge(n), read.getFirstEdge(n));
+            assertEquals(compact.getEndEdge(n), read.getEndEdge(n));
+        }
+        for(int e = 0; e < compact.getEdgeCount(); e++) {
+            assertEquals(compact.getSource(e), read.getSource(e));
+            assertEquals(compact.getTarget(e), read.getTarget(e));
+            assertEquals(compact.isDirected(e), read.isDirected(e));
+            assertEquals(compact.getUsageCount(e), read.getUsageCount(e));
+        }
+    }
+
+    @Test
+    public void turnsBackIntoTheSameGraph() throws IOException {
+        Graph graph = createGraph();
+        Graph rebuilt = copy(new CompactGraph(graph)).toGraph(CompactGraph.PLAIN);
+
+        assertEquals(graph.size(), rebuilt.size());
+        for(int n = 0; n < graph.size(); n++) {
+            for(int m = 0; m < graph.size(); m++) {
+                Edge edge = graph.getNode(n).getEdgeTo(graph.getNode(m));
+                Edge copied = rebuilt.getNode(n).getEdgeTo(rebuilt.getNode(m));
+
+                assertEquals(edge == null, copied == null);
+                if(edge != null) {
+                    assertEquals(edge.isDirected(), copied.isDirected());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void keepsLoopsOnceThroughEveryCopy() throws IOException {
+        Graph graph = new Graph();
+        Node a = graph.createNode();
+        Node b = graph.createNode();
+        graph.connect(new Edge(a, a));
+        graph.connect(new Edge(a, b));
+
+        for(int round = 0; round < 3; round++) {
+            graph = copy(new CompactGraph(graph)).toGraph(CompactGraph.PLAIN);
+
+            assertEquals(2, new CompactGraph(graph).getEdgeCount());
+            assertEquals(2, graph.getNode(0).getEdges().size());
+            assertEquals(1, graph.getNode(1).getEdges().size());
+            assertTrue(graph.getNode(0).hasChild(graph.getNode(0)));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsEdgesToMissingNodes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(1);
+        out.writeInt(0);
+        out.writeInt(1);
+        out.writeInt(0);
+        out.writeInt(3);
+        out.writeInt(1);
+        out.writeBoolean(true);
+        out.close();
+
+        CompactGraph.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    public void savedGrammarsValidateTheSameSentences() throws IOException {
+        Grammar grammar = new Grammar(null);
+        grammar.addPath(sentence("ART", "NOUN", "VERB", "PERIOD"));
+        grammar.addPath(sentence("ART", "ADJ", "NOUN", "VERB", "PERIOD"));
+        grammar.addPath(sentence("ART", "NOUN", "VERB", "PERIOD"));
+        grammar.addPath(sentence("PROPER", "VERB", "ADV", "PERIOD"));
+
+        File file = File.createTempFile("grammar", CompactGrammarEncoder.EXTENSION);
+        file.deleteOnExit();
+        assertTrue(new CompactGrammarEncoder(grammar).save(file.getPath()));
+        Grammar loaded = new CompactGrammarDecoder(null).load(file.getPath());
+
+        assertNotNull(loaded);
+        assertEquals(grammar.getTotalSentences(), loaded.getTotalSentences());
+        assertEquals(grammar.getGraph().size(), loaded.getGraph().size());
+        assertTrue(((GrammarNode)loaded.getStart()).isStart());
+
+        for(int n = 0; n < grammar.getGraph().size(); n++) {
+            GrammarNode node = (GrammarNode)grammar.getGraph().getNode(n);
+            GrammarNode copied = (GrammarNode)loaded.getGraph().getNode(n);
+            assertEquals(node.getType(), copied.getType());
+            assertEquals(node.getSignature(), copied.getSignature());
+
+            for(Edge edge: node.getOutgoingEdges()) {
+                int dest = grammar.getGraph().getNodes().indexOf(edge.getDest());
+                Edge copiedEdge = copied.getEdgeTo(loaded.getGraph().getNode(dest));
+                assertNotNull(copiedEdge);
+                assertEquals(((GrammarEdge)edge).getUsageCount(), ((GrammarEdge)copiedEdge).getUsageCount());
+            }
+        }
+
+        for(Sentence sentence: Arrays.asList(sentence("ART", "NOUN", "VERB", "PERIOD"),
+                sentence("PROPER", "VERB", "ADV", "PERIOD"), sentence("ART", "VERB", "PERIOD"))) {
+            assertEquals(grammar.validateSentence(sentence).getValidity(),
+                    loaded.validateSentence(sentence).getValidity(), 0.0001f);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package net.openalp.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import net.openalp.core.CompiledGrammar;
+import net.openalp.core.Grammar;
+import net.openalp.core.Sentence;
+import net.openalp.core.Token;
+import net.openalp.core.TokenLattice;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Checks the compiled automaton gives every sentence and every lattice the same validity
+ * as walking the grammar's graph, and that a grammar only compiles again once it has
+ * been trained.
+ */
+public class CompiledGrammarTest {
+    private static final String[] TYPES = {"ART", "ADJ", "NOUN", "VERB", "ADV"};
+
+    private static Token token(Random random) {
+        String type = TYPES[random.nextInt(TYPES.length)];
+        // Mostly plain tokens, sometimes one whose flags only match some nodes.
+        return new Token(type.toLowerCase(), type, random.nextInt(4) == 0 ? 1 : 7, 7);
+    }
+
+    private static Sentence sentence(Random random) {
+        Sentence sentence = new Sentence();
+        for(int i = 1 + random.nextInt(5); i > 0; i--) {
+            sentence.add(token(random));
+        }
+        sentence.add(new Token(".", "PERIOD", 7, 7));
+        return sentence;
+    }
+
+    private static Sentence copy(Sentence sentence) {
+        Sentence copy = new Sentence();
+        copy.addAll(sentence);
+        return copy;
+    }
+
+    // Trains on random sentences, some of them more than once so edges differ in strength.
+    private static Grammar createGrammar(Random random, List<Sentence> trained) {
+        Grammar grammar = new Grammar(null);
+        for(int i = 0; i < 12; i++) {
+            Sentence sentence = random.nextInt(3) == 0 && !trained.isEmpty()
+                    ? trained.get(random.nextInt(trained.size())) : sentence(random);
+            trained.add(sentence);
+            // Training consumes the tokens.
+            grammar.addPath(copy(sentence));
+        }
+        return grammar;
+    }
+
+    @Test
+    public void agreesWithTheGraphOnSentences() {
+        Random random = new Random(3);
+        int valid = 0;
+
+        for(int round = 0; round < 30; round++) {
+            List<Sentence> trained = new ArrayList<Sentence>();
+            Grammar grammar = createGrammar(random, trained);
+            CompiledGrammar automaton = grammar.compile();
+            assertEquals(grammar.getGraph().size(), automaton.getStateCount());
+
+            List<Sentence> sentences = new ArrayList<Sentence>(trained);
+            for(int i = 0; i < 20; i++) {
+                sentences.add(sentence(random));
+            }
+
+            for(Sentence sentence: sentences) {
+                float expected = grammar.validateSentence(copy(sentence)).getValidity();
+                assertEquals(sentence.toString(), expected, automaton.validate(sentence), 1e-6f);
+                if(expected > 0) {
+                    valid++;
+                }
+            }
+        }
+
+        assertTrue(valid > 0);
+    }
+
+    @Test
+    public void agreesWithTheGraphOnLattices() {
+        Random random = new Random(4);
+
+        for(int round = 0; round < 30; round++) {
+            List<Sentence> trained = new ArrayList<Sentence>();
+            Grammar grammar = createGrammar(random, trained);
+            CompiledGrammar automaton = grammar.compile();
+
+            for(int i = 0; i < 20; i++) {
+                // Start from a trained sentence and give some words a second meaning.
+                Sentence base = trained.get(random.nextInt(trained.size()));
+                List<Token[]> candidates = new ArrayList<Token[]>();
+                for(Token token: base) {
+                    candidates.add(random.nextBoolean() ? new Token[] {token} : new Token[] {token(random), token});
+                }
+                TokenLattice lattice = new TokenLattice(candidates);
+
+                assertEquals(grammar.validateSentence(lattice).getValidity(), automaton.validate(lattice), 1e-6f);
+            }
+        }
+    }
+
+    @Test
+    public void onlyRecompilesAfterTraining() {
+        Random random = new Random(5);
+        Grammar grammar = createGrammar(random, new ArrayList<Sentence>());
+        CompiledGrammar first = grammar.compile();
+
+        assertSame(first, grammar.compile());
+
+        Sentence sentence = sentence(random);
+        grammar.addPath(copy(sentence));
+        CompiledGrammar second = grammar.compile();
+
+        assertNotSame(first, second);
+        assertTrue(second.getVersion() != first.getVersion());
+        assertTrue(second.validate(sentence) > 0);
+
+        grammar.clear();
+        assertEquals(0, grammar.compile().validate(sentence), 0);
+    }
+}
@@ -0,0 +1,123 @@
+package net.openalp.test;
+
+import java.util.Random;
+import net.openalp.graph.Edge;
+import net.openalp.graph.Graph;
+import net.openalp.graph.Node;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Checks the distances a graph keeps for its layout stay right as nodes and edges are
+ * added. Two graphs are built and grown the same way, but one is made to measure every
+ * distance again before each step, so if the other one's updates in place went wrong
+ * the two would pull their nodes to different places.
+ */
+public class DistanceMatrixTest {
+    // Two separate random trees, so joining them later changes distances that were unreachable.
+    private static Graph createGraph(long seed, int size) {
+        Random random = new Random(seed);
+        Graph graph = new Graph();
+
+        for(int i = 0; i < size; i++) {
+            Node node = graph.createNode();
+            node.setX(random.nextFloat() * 20);
+            node.setY(random.nextFloat() * 20);
+
+            int tree = i % 2;
+            if(i > 1) {
+                graph.connect(new Edge(node, graph.getNode(tree + 2 * random.nextInt(i / 2))));
+            }
+        }
+
+        return graph;
+    }
+
+    // Adds a few nodes and edges, the same for every graph given the same seed.
+    private static void grow(Graph graph, Random random) {
+        for(int i = random.nextInt(3); i > 0; i--) {
+            Node node = graph.createNode();
+            node.setX(random.nextFloat() * 20);
+            node.setY(random.nextFloat() * 20);
+            graph.connect(new Edge(node, graph.getNode(random.nextInt(graph.size() - 1))));
+        }
+
+        for(int i = 1 + random.nextInt(3); i > 0; i--) {
+            Node src = graph.getNode(random.nextInt(graph.size()));
+            Node dest = graph.getNode(random.nextInt(graph.size()));
+            graph.connect(new Edge(src, dest, random.nextBoolean()));
+        }
+    }
+
+    private static void assertSameLayout(Graph expected, Graph actual) {
+        assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getNode(i).getX(), actual.getNode(i).getX(), 0);
+            assertEquals(expected.getNode(i).getY(), actual.getNode(i).getY(), 0);
+        }
+    }
+
+    @Test
+    public void updatesInPlaceMatchMeasuringAgain() {
+        Graph updated = createGraph(1, 60);
+        Graph measured = createGraph(1, 60);
+        Random updatedGrowth = new Random(2);
+        Random measuredGrowth = new Random(2);
+
+        updated.updateNodes();
+        measured.updateNodes();
+
+        for(int round = 0; round < 40; round++) {
+            grow(updated, updatedGrowth);
+            grow(measured, measuredGrowth);
+
+            // Setting the nodes throws the distances away.
+            measured.setNodes(measured.getNodes());
+            updated.updateNodes();
+            measured.updateNodes();
+
+            assertSameLayout(measured, updated);
+        }
+    }
+
+    @Test
+    public void noticesEdgesAddedBehindItsBack() {
+        Graph updated = createGraph(3, 40);
+        Graph measured = createGraph(3, 40);
+        updated.updateNodes();
+        measured.updateNodes();
+
+        // Joins the two trees without telling either graph.
+        for(Graph graph: new Graph[] {updated, measured}) {
+            Edge edge = new Edge(graph.getNode(0), graph.getNode(1));
+            graph.getNode(0).addEdge(edge);
+            graph.getNode(1).addEdge(edge);
+            // Node 2 hangs off node 0. Making that edge undirected tells the graph something changed,
+            // but no distance did, so the distances must find the hidden edge by counting.
+            graph.connect(new Edge(graph.getNode(0), graph.getNode(2)));
+        }
+
+        measured.setNodes(measured.getNodes());
+        updated.updateNodes();
+        measured.updateNodes();
+
+        assertSameLayout(measured, updated);
+    }
+}
@@ -0,0 +1,137 @@
+package net.openalp.test;
+
+import java.util.Random;
+import net.openalp.graph.Edge;
+import net.openalp.graph.Graph;
+import net.openalp.graph.KeyedFilter;
+import net.openalp.graph.Node;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Checks that searching through the graph's reachability index finds the same node as
+ * walking the graph, and that the index notices nodes changing their keys.
+ */
+public class GraphSearchTest {
+    private static final int KEYS = 12;
+
+    private static class KeyNode extends Node {
+        private int key;
+
+        KeyNode(int key) {
+            this.key = key;
+        }
+
+        public int getMatchKey() {
+            return key;
+        }
+
+        void setKey(int key) {
+            this.key = key;
+            matchKeyChanged();
+        }
+    }
+
+    private static class KeyFilter implements KeyedFilter {
+        private final int key;
+
+        KeyFilter(int key) {
+            this.key = key;
+        }
+
+        public boolean matches(Node target) {
+            return target.getMatchKey() == key;
+        }
+
+        public int getKeyCount() {
+            return 1;
+        }
+
+        public int getKey(int index) {
+            return key;
+        }
+    }
+
+    // Mostly forward edges with a few back again, some of them undirected, and plenty of dead ends.
+    private static Graph createGraph(long seed, int size) {
+        Random random = new Random(seed);
+        Graph graph = new Graph();
+
+        for(int i = 0; i < size; i++) {
+            graph.addNode(new KeyNode(random.nextInt(KEYS)));
+        }
+        for(int i = 0; i < size * 2; i++) {
+            Node src = graph.getNode(random.nextInt(size));
+            Node dest = graph.getNode(random.nextInt(size));
+            graph.connect(new Edge(src, dest, random.nextInt(8) != 0));
+        }
+
+        return graph;
+    }
+
+    @Test
+    public void findsTheSameNodeAsWalkingTheGraph() {
+        for(long seed = 0; seed < 20; seed++) {
+            Graph graph = createGraph(seed, 60);
+
+            for(Node from: graph.getNodes()) {
+                for(int key = 0; key < KEYS + 1; key++) {
+                    KeyFilter filter = new KeyFilter(key);
+                    assertSame(from.findMatchingNode(filter, true), graph.findMatchingNode(from, filter));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void keepsUpWithNewEdges() {
+        Graph graph = new Graph();
+        KeyNode a = new KeyNode(1);
+        KeyNode b = new KeyNode(2);
+        KeyNode c = new KeyNode(3);
+        graph.addNode(a);
+        graph.addNode(b);
+        graph.connect(new Edge(a, b));
+
+        assertNull(graph.findMatchingNode(a, new KeyFilter(3)));
+
+        graph.addNode(c);
+        graph.connect(new Edge(b, c));
+
+        assertSame(c, graph.findMatchingNode(a, new KeyFilter(3)));
+    }
+
+    @Test
+    public void noticesANodeChangingItsKey() {
+        Graph graph = new Graph();
+        KeyNode a = new KeyNode(1);
+        KeyNode b = new KeyNode(2);
+        graph.addNode(a);
+        graph.addNode(b);
+        graph.connect(new Edge(a, b));
+
+        assertNull(graph.findMatchingNode(a, new KeyFilter(5)));
+
+        b.setKey(5);
+
+        assertSame(b, graph.findMatchingNode(a, new KeyFilter(5)));
+        assertNull(graph.findMatchingNode(a, new KeyFilter(2)));
+    }
+}
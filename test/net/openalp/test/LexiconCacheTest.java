@@ -0,0 +1,122 @@
+package net.openalp.test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import net.openalp.core.LexiconCache;
+import net.openalp.core.Token;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Checks the lexicon cache keeps the most recently used words, counts its hits and
+ * misses, forgets words when the lexicon says they changed, and never keeps a lookup
+ * that was read before a change.
+ */
+public class LexiconCacheTest {
+    private static List<Token> tokens(String word, String type) {
+        return Arrays.asList(new Token(word, type, 7, 7));
+    }
+
+    @Test
+    public void returnsWhatWasPut() {
+        LexiconCache cache = new LexiconCache(4);
+        cache.put("dog", tokens("dog", "NOUN"));
+
+        assertEquals(1, cache.get("dog").size());
+        assertEquals("NOUN", cache.get("dog").get(0).getType());
+        assertNull(cache.get("cat"));
+    }
+
+    @Test
+    public void cachesUnknownWordsAsEmpty() {
+        LexiconCache cache = new LexiconCache(4);
+        cache.put("zzz", Collections.<Token>emptyList());
+
+        assertNotNull(cache.get("zzz"));
+        assertTrue(cache.get("zzz").isEmpty());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedWord() {
+        LexiconCache cache = new LexiconCache(2);
+        cache.put("a", tokens("a", "ART"));
+        cache.put("b", tokens("b", "NOUN"));
+        // Using a makes b the eldest.
+        cache.get("a");
+        cache.put("c", tokens("c", "NOUN"));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        LexiconCache cache = new LexiconCache(4);
+        cache.put("dog", tokens("dog", "NOUN"));
+        cache.get("dog");
+        cache.get("dog");
+        cache.get("cat");
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2 / 3.0f, cache.getHitRate(), 0.0001f);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void cachedListsCannotBeModified() {
+        LexiconCache cache = new LexiconCache(4);
+        cache.put("dog", tokens("dog", "NOUN"));
+        cache.get("dog").clear();
+    }
+
+    @Test
+    public void forgetsChangedWords() {
+        LexiconCache cache = new LexiconCache(4);
+        cache.put("dog", tokens("dog", "NOUN"));
+        cache.put("cat", tokens("cat", "NOUN"));
+        cache.wordChanged("dog", 1);
+
+        assertNull(cache.get("dog"));
+        assertNotNull(cache.get("cat"));
+    }
+
+    @Test
+    public void turnsAwayReadsOlderThanAChange() {
+        LexiconCache cache = new LexiconCache(4);
+        long readVersion = 0;
+        // The word is defined after the lookup read it but before the lookup cached it.
+        cache.wordChanged("dog", 1);
+
+        assertFalse(cache.put("dog", Collections.<Token>emptyList(), readVersion));
+        assertNull(cache.get("dog"));
+    }
+
+    @Test
+    public void keepsReadsMadeAfterAChange() {
+        LexiconCache cache = new LexiconCache(4);
+        cache.wordChanged("dog", 1);
+
+        assertTrue(cache.put("dog", tokens("dog", "NOUN"), 1));
+        assertNotNull(cache.get("dog"));
+    }
+}
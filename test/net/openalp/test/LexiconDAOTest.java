@@ -0,0 +1,173 @@
+package net.openalp.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import net.openalp.core.BloomFilter;
+import net.openalp.core.LexiconDAO;
+import net.openalp.core.Token;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Checks that lookups through the lexicon cache and filter always see words as they are
+ * in the database, even while other threads are defining and removing them. Each test
+ * works on its own copy of the lexicon.
+ */
+public class LexiconDAOTest {
+    private static final String WORD = "zebra";
+    private File file;
+    private LexiconDAO lexicon;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("lexicon", ".db");
+        copy(new File(LexiconDAO.DEFAULT_DATABASE), file);
+        lexicon = new LexiconDAO(file.getPath());
+    }
+
+    @After
+    public void tearDown() {
+        lexicon.close();
+        file.delete();
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        InputStream in = new FileInputStream(from);
+        OutputStream out = new FileOutputStream(to);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    @Test
+    public void seesAWordDefinedAfterItWasLookedUp() {
+        assertTrue(lexicon.get(WORD).isEmpty());
+        assertTrue(lexicon.getAll(Arrays.asList(WORD)).get(WORD).isEmpty());
+
+        lexicon.add(new Token(WORD, "NOUN", 7, 7));
+
+        assertEquals(1, lexicon.get(WORD).size());
+        assertEquals(1, lexicon.getAll(Arrays.asList(WORD)).get(WORD).size());
+    }
+
+    @Test
+    public void forgetsARemovedWord() {
+        lexicon.add(new Token(WORD, "NOUN", 7, 7));
+        assertEquals(1, lexicon.get(WORD).size());
+
+        lexicon.remove(WORD);
+
+        assertTrue(lexicon.get(WORD).isEmpty());
+    }
+
+    @Test
+    public void removingAWordDoesNotRebuildTheFilter() {
+        lexicon.add(new Token(WORD, "NOUN", 7, 7));
+        BloomFilter filter = lexicon.getFilter();
+
+        lexicon.remove(WORD);
+
+        assertSame(filter, lexicon.getFilter());
+        assertTrue(lexicon.get(WORD).isEmpty());
+        assertEquals(1, filter.getFalsePositives());
+    }
+
+    @Test
+    public void rebuildsTheFilterOnceManyWordsAreRemoved() throws IOException, SQLException {
+        StringBuilder words = new StringBuilder();
+        for(int i = 0; i < 200; i++) {
+            words.append("word").append(i).append(",NOUN,7,7\n");
+        }
+        lexicon.importWords(new StringReader(words.toString()));
+        BloomFilter filter = lexicon.getFilter();
+
+        int removed = 0;
+        while(lexicon.getFilter() == filter) {
+            lexicon.remove("word" + removed);
+            removed++;
+        }
+
+        // Rebuilt once for the whole run of removals, not once for each.
+        assertTrue(removed > 1);
+        assertFalse(lexicon.getFilter().mightContain("word0"));
+        assertTrue(lexicon.getFilter().mightContain("word199"));
+    }
+
+    @Test
+    public void lookupsInterleavedWithDefinesAreNeverLeftStale() throws InterruptedException {
+        final boolean[] stop = {false};
+        final Throwable[] failure = {null};
+
+        // Looks the word up as fast as it can, so lookups keep landing part way through defines.
+        Thread reader = new Thread() {
+            public void run() {
+                try {
+                    while(true) {
+                        synchronized(stop) {
+                            if(stop[0]) return;
+                        }
+                        lexicon.get(WORD);
+                        lexicon.getAll(Arrays.asList(WORD, "dog"));
+                    }
+                } catch(Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        };
+        reader.start();
+
+        try {
+            for(int i = 0; i < 50; i++) {
+                lexicon.add(new Token(WORD, "NOUN", 7, 7));
+                assertEquals(1, lexicon.get(WORD).size());
+
+                lexicon.remove(WORD);
+                assertTrue(lexicon.get(WORD).isEmpty());
+            }
+        } finally {
+            synchronized(stop) {
+                stop[0] = true;
+            }
+            reader.join();
+        }
+
+        assertNull(failure[0]);
+        Map<String, List<Token>> found = lexicon.getAll(Arrays.asList(WORD));
+        assertTrue(found.get(WORD).isEmpty());
+    }
+}
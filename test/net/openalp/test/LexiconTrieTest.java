@@ -0,0 +1,190 @@
+package net.openalp.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import net.openalp.core.LexiconTrie;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Checks the trie keeps track of words as edges are split and merged, and that pattern
+ * searches find the same words, in the same order, as matching every word one by one.
+ */
+public class LexiconTrieTest {
+    private static class Collector implements LexiconTrie.Visitor {
+        final List<String> words = new ArrayList<String>();
+        int stopAfter = Integer.MAX_VALUE;
+
+        public boolean visit(String word) {
+            words.add(word);
+            return words.size() < stopAfter;
+        }
+    }
+
+    private static LexiconTrie trie(String... words) {
+        LexiconTrie trie = new LexiconTrie();
+        for(String word: words) {
+            trie.add(word);
+        }
+        return trie;
+    }
+
+    private static List<String> search(LexiconTrie trie, String pattern) {
+        Collector collector = new Collector();
+        trie.search(pattern, 0, Integer.MAX_VALUE, collector);
+        return collector.words;
+    }
+
+    // The pattern as a regular expression, to check the trie against.
+    private static String regex(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for(char c: pattern.toCharArray()) {
+            if(c == LexiconTrie.ANY_SEQUENCE) {
+                regex.append(".*");
+            } else if(c == LexiconTrie.ANY_CHARACTER) {
+                regex.append('.');
+            } else {
+                regex.append(c);
+            }
+        }
+        return regex.toString();
+    }
+
+    @Test
+    public void keepsWordsThatShareAPrefix() {
+        LexiconTrie trie = trie("cart", "car", "cat", "c", "cargo");
+
+        assertEquals(5, trie.size());
+        assertTrue(trie.contains("car"));
+        assertTrue(trie.contains("c"));
+        assertTrue(trie.contains("cargo"));
+        assertFalse(trie.contains("ca"));
+        assertFalse(trie.contains("carg"));
+        assertFalse(trie.contains("carts"));
+        assertFalse(trie.add("cat"));
+        assertEquals(5, trie.size());
+    }
+
+    @Test
+    public void removesWordsAndKeepsTheRest() {
+        LexiconTrie trie = trie("car", "cart", "cargo", "cat");
+
+        assertTrue(trie.remove("car"));
+        assertFalse(trie.remove("car"));
+        assertFalse(trie.remove("ca"));
+        assertEquals(3, trie.size());
+        assertFalse(trie.contains("car"));
+        assertTrue(trie.contains("cart"));
+        assertTrue(trie.contains("cargo"));
+
+        // Leaves "car" with one child, which is merged back into its edge.
+        assertTrue(trie.remove("cargo"));
+        assertTrue(trie.contains("cart"));
+        assertTrue(trie.contains("cat"));
+        assertEquals(Arrays.asList("cart", "cat"), search(trie, "*"));
+
+        trie.clear();
+        assertEquals(0, trie.size());
+        assertFalse(trie.contains("cat"));
+    }
+
+    @Test
+    public void findsWordsWithWildcardsInOrder() {
+        LexiconTrie trie = trie("dog", "cat", "cart", "coat", "scat", "at", "cut");
+
+        assertEquals(Arrays.asList("at", "cart", "cat", "coat", "cut", "dog", "scat"), search(trie, "*"));
+        assertEquals(Arrays.asList("cat", "cut"), search(trie, "c?t"));
+        assertEquals(Arrays.asList("at", "cat", "coat", "scat"), search(trie, "*at"));
+        assertEquals(Arrays.asList("cart", "coat"), search(trie, "c??t"));
+        assertEquals(Arrays.asList("cat"), search(trie, "cat"));
+        assertTrue(search(trie, "ca").isEmpty());
+    }
+
+    @Test
+    public void pagesThroughMatches() {
+        LexiconTrie trie = trie("a", "b", "c", "d", "e");
+        Collector collector = new Collector();
+
+        assertEquals(2, trie.search("*", 1, 2, collector));
+        assertEquals(Arrays.asList("b", "c"), collector.words);
+
+        collector = new Collector();
+        collector.stopAfter = 1;
+        trie.searchPrefix("", 3, 10, collector);
+        assertEquals(Arrays.asList("d"), collector.words);
+    }
+
+    @Test
+    public void searchesByPrefix() {
+        LexiconTrie trie = trie("in", "inside", "into", "on", "index");
+        Collector collector = new Collector();
+        trie.searchPrefix("in", 0, 10, collector);
+
+        assertEquals(Arrays.asList("in", "index", "inside", "into"), collector.words);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesWildcardsInPrefixes() {
+        new LexiconTrie().searchPrefix("in*", 0, 10, new Collector());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesPatternsTooLongToMatch() {
+        char[] pattern = new char[64];
+        Arrays.fill(pattern, '?');
+        new LexiconTrie().search(new String(pattern), 0, 10, new Collector());
+    }
+
+    @Test
+    public void agreesWithMatchingEveryWord() {
+        Random random = new Random(7);
+        TreeSet<String> words = new TreeSet<String>();
+        LexiconTrie trie = new LexiconTrie();
+
+        for(int i = 0; i < 2000; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(7);
+            for(int j = 0; j < length; j++) {
+                word.append((char)('a' + random.nextInt(4)));
+            }
+            assertEquals(words.add(word.toString()), trie.add(word.toString()));
+        }
+        for(String word: new ArrayList<String>(words)) {
+            if(random.nextInt(3) == 0) {
+                words.remove(word);
+                assertTrue(trie.remove(word));
+            }
+        }
+        assertEquals(words.size(), trie.size());
+
+        for(String pattern: Arrays.asList("*", "a*", "*d", "?b*", "a?c?", "*ab*ba*", "??", "d*a?b")) {
+            List<String> expected = new ArrayList<String>();
+            for(String word: words) {
+                if(word.matches(regex(pattern))) {
+                    expected.add(word);
+                }
+            }
+            assertEquals(pattern, expected, search(trie, pattern));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package net.openalp.test;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import net.openalp.core.Grammar;
+import net.openalp.core.LexiconCompiler;
+import net.openalp.core.LexiconDAO;
+import net.openalp.core.MappedLexicon;
+import net.openalp.core.Token;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Checks that a compiled lexicon gives back exactly the tokens it was compiled from,
+ * that compiling again does not disturb a lexicon still mapping the old file, and that
+ * a grammar can be switched over to one.
+ */
+public class MappedLexiconTest {
+    private List<File> files;
+
+    @Before
+    public void setUp() {
+        files = new ArrayList<File>();
+    }
+
+    @After
+    public void tearDown() {
+        for(File file: files) {
+            file.delete();
+        }
+    }
+
+    private MappedLexicon compile(List<Token> tokens) throws IOException {
+        File file = File.createTempFile("lexicon", ".bin");
+        files.add(file);
+        LexiconCompiler.compile(tokens, file.getPath());
+        return new MappedLexicon(file.getPath());
+    }
+
+    private static void assertSameTokens(List<Token> expected, List<Token> actual) {
+        assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getValue(), actual.get(i).getValue());
+            assertEquals(expected.get(i).getSignature(), actual.get(i).getSignature());
+        }
+    }
+
+    @Test
+    public void findsEveryWordAndEntry() throws IOException {
+        List<Token> tokens = Arrays.asList(
+                new Token("run", "VERB", 7, 2),
+                new Token("dog", "NOUN", 4, 7),
+                new Token("run", "NOUN", 4, 7),
+                new Token("in front of", "PREP", 7, 7));
+        MappedLexicon lexicon = compile(tokens);
+
+        assertEquals(3, lexicon.size());
+        assertSameTokens(Arrays.asList(tokens.get(0), tokens.get(2)), lexicon.get("run"));
+        assertSameTokens(Arrays.asList(tokens.get(1)), lexicon.get("dog"));
+        assertTrue(lexicon.get("cat").isEmpty());
+        assertEquals(-1, lexicon.find("ru"));
+
+        assertEquals(1, lexicon.getPhrases().size());
+        assertEquals("dog", lexicon.getToken(lexicon.getFirstEntry(lexicon.find("dog"))).getValue());
+    }
+
+    @Test
+    public void agreesWithTheDatabase() throws IOException {
+        LexiconDAO database = new LexiconDAO();
+        try {
+            List<Token> tokens = database.readAll();
+            MappedLexicon lexicon = compile(tokens);
+
+            List<String> words = new ArrayList<String>();
+            for(Token token: tokens) {
+                words.add(token.getValue());
+            }
+            words.add("notaword");
+
+            Map<String, List<Token>> expected = database.getAll(words);
+            Map<String, List<Token>> actual = lexicon.getAll(words);
+            for(String word: words) {
+                assertSameTokens(expected.get(word), actual.get(word));
+            }
+        } finally {
+            database.close();
+        }
+    }
+
+    @Test
+    public void recompilingLeavesMappedLexiconsAlone() throws IOException {
+        final File file = File.createTempFile("lexicon", ".bin");
+        files.add(file);
+        LexiconCompiler.compile(Arrays.asList(new Token("dog", "NOUN", 4, 7)), file.getPath());
+        MappedLexicon old = new MappedLexicon(file.getPath());
+
+        LexiconCompiler.compile(Arrays.asList(new Token("cat", "NOUN", 4, 7), new Token("cow", "NOUN", 4, 7)), file.getPath());
+        MappedLexicon recompiled = new MappedLexicon(file.getPath());
+
+        assertEquals(1, old.size());
+        assertEquals("dog", old.get("dog").get(0).getValue());
+        assertTrue(old.get("cat").isEmpty());
+        assertEquals(2, recompiled.size());
+        assertTrue(recompiled.get("dog").isEmpty());
+        // No temporary files are left behind.
+        assertEquals(0, file.getAbsoluteFile().getParentFile().listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith(file.getName()) && name.endsWith(".tmp");
+            }
+        }).length);
+    }
+
+    @Test
+    public void tokenizesThroughTheGrammarOnceSwitched() throws IOException {
+        MappedLexicon lexicon = compile(Arrays.asList(new Token("dog", "NOUN", 4, 7)));
+        Grammar grammar = new Grammar(compile(Arrays.asList(new Token("cat", "NOUN", 4, 7))));
+
+        grammar.setLexicon(lexicon);
+
+        assertSame(lexicon, grammar.getTokenizer().getLexicon());
+        assertTrue(grammar.getTokenizer().tokenize("dog").get(0).getErrors().isEmpty());
+    }
+}
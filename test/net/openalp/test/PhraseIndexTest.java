@@ -0,0 +1,99 @@
+package net.openalp.test;
+
+import java.util.Arrays;
+import java.util.List;
+import net.openalp.core.PhraseIndex;
+import net.openalp.core.TokenizedSentence;
+import net.openalp.core.Tokenizer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Checks the phrase index finds the longest phrase at each word whatever its case and
+ * spacing, forgets removed phrases without losing longer ones, and that the tokenizer
+ * reads a phrase as one word.
+ */
+public class PhraseIndexTest {
+    private static final List<String> WORDS = Arrays.asList("the", "dog", "sat", "in", "front", "of", "the", "door");
+
+    @Test
+    public void countsWords() {
+        assertEquals(0, PhraseIndex.countWords("  "));
+        assertEquals(1, PhraseIndex.countWords(" dog "));
+        assertEquals(3, PhraseIndex.countWords("in  front\tof"));
+        assertTrue(PhraseIndex.isPhrase("in front"));
+        assertFalse(PhraseIndex.isPhrase("front"));
+    }
+
+    @Test
+    public void ignoresSingleWordsAndDuplicates() {
+        PhraseIndex index = new PhraseIndex();
+
+        assertFalse(index.add("dog"));
+        assertTrue(index.add("in front"));
+        assertFalse(index.add("in front"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void findsTheLongestPhrase() {
+        PhraseIndex index = new PhraseIndex();
+        index.add("in front");
+        index.add("In  Front of");
+
+        assertEquals(3, index.match(WORDS, 3, WORDS.size()));
+        assertEquals("In  Front of", index.getPhrase(WORDS, 3, 3));
+        assertEquals("in front", index.getPhrase(WORDS, 3, 2));
+        // The phrase may not run past the end it is given.
+        assertEquals(2, index.match(WORDS, 3, 5));
+        assertEquals(0, index.match(WORDS, 4, WORDS.size()));
+        assertNull(index.getPhrase(WORDS, 4, 2));
+    }
+
+    @Test
+    public void removesOnlyTheGivenPhrase() {
+        PhraseIndex index = new PhraseIndex();
+        index.add("in front");
+        index.add("in front of");
+
+        assertFalse(index.remove("in back"));
+        assertTrue(index.remove("in front"));
+        assertFalse(index.remove("in front"));
+        assertEquals(1, index.size());
+        assertEquals(3, index.match(WORDS, 3, WORDS.size()));
+
+        assertTrue(index.remove("in front of"));
+        assertEquals(0, index.match(WORDS, 3, WORDS.size()));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void tokenizesAPhraseAsOneWord() {
+        TokenizerTest.StubLexicon lexicon = TokenizerTest.createLexicon();
+        lexicon.define("in front of", "PREP");
+        List<TokenizedSentence> sentences = new Tokenizer(lexicon).tokenize("The dog runs In front  of the dog.");
+
+        assertEquals(1, sentences.size());
+        assertTrue(sentences.get(0).getErrors().isEmpty());
+        assertEquals(7, sentences.get(0).getLattice().size());
+        assertEquals("PREP", sentences.get(0).getLattice().getCandidates(3)[0].getType());
+        assertEquals("NOUN", sentences.get(0).getLattice().getCandidates(5)[0].getType());
+    }
+}
@@ -0,0 +1,171 @@
+package net.openalp.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import net.openalp.core.SentenceIterator;
+import net.openalp.core.TokenizedSentence;
+import net.openalp.core.Tokenizer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Checks a stream is tokenized into the same sentences as the whole text at once, however
+ * the reads are sized and however far into the stream a sentence is, and that errors and
+ * overlong sentences stop or split the stream instead of filling memory.
+ */
+public class SentenceIteratorTest {
+    // Hands out a few characters at a time, and can fail part way.
+    private static class TrickleReader extends Reader {
+        private final String text;
+        private final int chunk;
+        private final int failAt;
+        private int position;
+        boolean closed;
+
+        TrickleReader(String text, int chunk, int failAt) {
+            this.text = text;
+            this.chunk = chunk;
+            this.failAt = failAt;
+        }
+
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if(position >= failAt) {
+                throw new IOException("Disk on fire");
+            }
+            if(position == text.length()) {
+                return -1;
+            }
+
+            int count = Math.min(Math.min(chunk, length), text.length() - position);
+            text.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static String createText(int sentences) {
+        StringBuilder text = new StringBuilder();
+        String[] choices = {"The dog runs. ", "the  DOG\n runs!  ", "The cat runs? ", "dog.\n"};
+        for(int i = 0; i < sentences; i++) {
+            text.append(choices[i % choices.length]);
+        }
+        return text.toString();
+    }
+
+    private static List<TokenizedSentence> drain(SentenceIterator iterator) {
+        List<TokenizedSentence> sentences = new ArrayList<TokenizedSentence>();
+        while(iterator.hasNext()) {
+            sentences.add(iterator.next());
+        }
+        return sentences;
+    }
+
+    // The sentences of the stream against the sentences of the whole text, by their place in the text.
+    private static void assertSameSentences(List<TokenizedSentence> expected, List<TokenizedSentence> streamed) {
+        assertEquals(expected.size(), streamed.size());
+        for(int i = 0; i < expected.size(); i++) {
+            TokenizedSentence sentence = streamed.get(i);
+            assertEquals(expected.get(i).getStart(), sentence.getOffset() + sentence.getStart());
+            assertEquals(expected.get(i).getEnd(), sentence.getOffset() + sentence.getEnd());
+            assertEquals(expected.get(i).getErrors().size(), sentence.getErrors().size());
+            assertEquals(expected.get(i).getLattice().size(), sentence.getLattice().size());
+        }
+    }
+
+    @Test
+    public void streamsTheSameSentencesAsTheWholeText() {
+        Tokenizer tokenizer = new Tokenizer(TokenizerTest.createLexicon());
+        String text = createText(9);
+
+        assertSameSentences(tokenizer.tokenize(text), drain(tokenizer.iterate(new StringReader(text))));
+    }
+
+    @Test
+    public void keepsSentencesWholeAcrossReads() {
+        Tokenizer tokenizer = new Tokenizer(TokenizerTest.createLexicon());
+        String text = createText(3000);
+        TrickleReader reader = new TrickleReader(text, 7, Integer.MAX_VALUE);
+
+        assertSameSentences(tokenizer.tokenize(text), drain(tokenizer.iterate(reader)));
+        assertTrue(reader.closed);
+    }
+
+    @Test
+    public void readsChannels() {
+        Tokenizer tokenizer = new Tokenizer(TokenizerTest.createLexicon());
+        String text = createText(40);
+        Charset utf8 = Charset.forName("UTF-8");
+        byte[] bytes = text.getBytes(utf8);
+
+        assertSameSentences(tokenizer.tokenize(text), drain(tokenizer.iterate(Channels.newChannel(new ByteArrayInputStream(bytes)), utf8)));
+    }
+
+    @Test
+    public void cutsOverlongSentencesAtAWord() {
+        Tokenizer tokenizer = new Tokenizer(TokenizerTest.createLexicon());
+        StringBuilder text = new StringBuilder();
+        while(text.length() < SentenceIterator.MAX_SENTENCE_LENGTH * 3) {
+            text.append("dog ");
+        }
+
+        List<TokenizedSentence> sentences = drain(tokenizer.iterate(new StringReader(text.toString())));
+
+        assertTrue(sentences.size() > 1);
+        long expectedStart = 0;
+        for(TokenizedSentence sentence: sentences) {
+            long start = sentence.getOffset() + sentence.getStart();
+            assertEquals(expectedStart, start);
+            assertTrue(sentence.getEnd() - sentence.getStart() <= SentenceIterator.MAX_SENTENCE_LENGTH);
+            assertTrue(sentence.getErrors().isEmpty());
+            expectedStart = sentence.getOffset() + sentence.getEnd() + 1;
+        }
+    }
+
+    @Test
+    public void stopsWhenTheStreamFails() {
+        Tokenizer tokenizer = new Tokenizer(TokenizerTest.createLexicon());
+        TrickleReader reader = new TrickleReader(createText(100), 5, 30);
+        SentenceIterator iterator = tokenizer.iterate(reader);
+
+        List<TokenizedSentence> sentences = drain(iterator);
+
+        assertNotNull(iterator.getException());
+        assertTrue(sentences.size() <= 3);
+        assertTrue(reader.closed);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void endsWithNoSuchElement() {
+        SentenceIterator iterator = new Tokenizer(TokenizerTest.createLexicon()).iterate(new StringReader("The dog runs."));
+        drain(iterator);
+        iterator.next();
+    }
+}
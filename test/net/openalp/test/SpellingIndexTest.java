@@ -0,0 +1,118 @@
+package net.openalp.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import net.openalp.core.SpellingIndex;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Checks spelling suggestions against measuring the edit distance to every word, which
+ * is slow but obviously right.
+ */
+public class SpellingIndexTest {
+    private static final List<String> WORDS = Arrays.asList(
+            "the", "they", "then", "there", "their", "dog", "dogs", "cat", "cart", "care",
+            "running", "runner", "run", "ran", "walk", "walked", "walking", "grammar", "grammars",
+            "international", "internationally", "interval");
+
+    private static SpellingIndex createIndex() {
+        SpellingIndex index = new SpellingIndex();
+        for(String word: WORDS) {
+            index.add(word);
+        }
+        return index;
+    }
+
+    // The optimal string alignment distance, the same measure the index uses.
+    private static int distance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for(int i = 0; i <= a.length(); i++) d[i][0] = i;
+        for(int j = 0; j <= b.length(); j++) d[0][j] = j;
+
+        for(int i = 1; i <= a.length(); i++) {
+            for(int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if(i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    // Every word within the distance suggest allows for a misspelling of this length, in any order.
+    private static List<String> bruteForce(String misspelling) {
+        int allowed = Math.min(SpellingIndex.DEFAULT_MAX_DISTANCE, (misspelling.length() + 1) / 3);
+        List<String> found = new ArrayList<String>();
+        for(String word: WORDS) {
+            if(!word.equals(misspelling) && distance(misspelling, word) <= allowed) {
+                found.add(word);
+            }
+        }
+        Collections.sort(found);
+        return found;
+    }
+
+    @Test
+    public void findsTheSameWordsAsMeasuringEveryWord() {
+        SpellingIndex index = createIndex();
+        String[] misspellings = {"teh", "thier", "dgo", "cta", "runing", "runnning", "walkd", "gramar",
+                "grammer", "internatinal", "internationaly", "intervall", "xyzzy", "a", "do"};
+
+        for(String misspelling: misspellings) {
+            List<String> suggestions = new ArrayList<String>(index.suggest(misspelling, WORDS.size()));
+            Collections.sort(suggestions);
+            assertEquals(misspelling, bruteForce(misspelling), suggestions);
+        }
+    }
+
+    @Test
+    public void putsTheClosestWordFirst() {
+        SpellingIndex index = createIndex();
+
+        assertEquals("grammar", index.suggest("gramar", 5).get(0));
+        assertEquals("their", index.suggest("thier", 5).get(0));
+        assertEquals("dog", index.suggest("dgo", 5).get(0));
+    }
+
+    @Test
+    public void givesNoMoreThanTheLimit() {
+        assertEquals(2, createIndex().suggest("thn", 2).size());
+    }
+
+    @Test
+    public void neverSuggestsAWordForItself() {
+        assertFalse(createIndex().suggest("walked", 10).contains("walked"));
+    }
+
+    @Test
+    public void forgetsRemovedWords() {
+        SpellingIndex index = createIndex();
+        assertTrue(index.remove("grammar"));
+
+        assertFalse(index.suggest("gramar", 5).contains("grammar"));
+        assertFalse(index.contains("grammar"));
+        assertEquals(WORDS.size() - 1, index.size());
+    }
+}
@@ -0,0 +1,130 @@
+package net.openalp.test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+import net.openalp.core.TextScanner;
+import net.openalp.core.Tokenizer;
+import net.openalp.core.Word;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Checks the scanner finds the same words and sentences as Tokenizer.split, at offsets into
+ * the whole text, and hands back one String for every spelling of a word.
+ */
+public class TextScannerTest {
+    @Test
+    public void splitsWordsSymbolsAndSentences() {
+        TextScanner scanner = new TextScanner();
+        scanner.scan("The cat, sat.  Dog ran!");
+
+        assertEquals(Arrays.asList("the", "cat", ",", "sat", ".", "dog", "ran", "!"), scanner.getWords());
+        assertEquals(2, scanner.getSentenceCount());
+        assertEquals(0, scanner.getFirstWord(0));
+        assertEquals(5, scanner.getEndWord(0));
+        assertEquals(5, scanner.getFirstWord(1));
+        assertEquals(8, scanner.getEndWord(1));
+        assertEquals(15, scanner.getWordStart(5));
+        assertEquals(18, scanner.getWordEnd(5));
+    }
+
+    @Test
+    public void keepsAnUnfinishedLastSentence() {
+        TextScanner scanner = new TextScanner();
+        scanner.scan("One.  two three");
+
+        assertEquals(2, scanner.getSentenceCount());
+        assertEquals(Arrays.asList("two", "three"), scanner.getWords().subList(scanner.getFirstWord(1), scanner.getEndWord(1)));
+    }
+
+    @Test
+    public void findsNothingInBlankText() {
+        TextScanner scanner = new TextScanner();
+        scanner.scan(" \t\r\n ");
+
+        assertEquals(0, scanner.getWordCount());
+        assertEquals(0, scanner.getSentenceCount());
+    }
+
+    @Test
+    public void foldsEverySpellingToOneString() {
+        TextScanner scanner = new TextScanner();
+        scanner.scan("Cat CAT cat \u00c9T\u00c9 \u00e9t\u00e9");
+
+        assertEquals("cat", scanner.getWord(0));
+        assertSame(scanner.getWord(0), scanner.getWord(1));
+        assertSame(scanner.getWord(0), scanner.getWord(2));
+        assertEquals("\u00e9t\u00e9", scanner.getWord(3));
+        assertSame(scanner.getWord(3), scanner.getWord(4));
+
+        // The table is kept from one scan to the next.
+        String cat = scanner.getWord(0);
+        scanner.scan("cAt");
+        assertSame(cat, scanner.getWord(0));
+        assertEquals(TextScanner.fold("cAt"), cat);
+    }
+
+    @Test
+    public void countsOffsetsFromTheWholeText() {
+        char[] text = "ignored. The dog. ignored".toCharArray();
+        TextScanner scanner = new TextScanner();
+        scanner.scan(text, 9, 17);
+
+        assertEquals(Arrays.asList("the", "dog", "."), scanner.getWords());
+        assertEquals(9, scanner.getWordStart(0));
+        assertEquals(16, scanner.getWordStart(2));
+        assertEquals(17, scanner.getWordEnd(2));
+    }
+
+    @Test
+    public void agreesWithSplit() {
+        Random random = new Random(11);
+        String alphabet = "abcAB ,.!?'\n\t(\"";
+        Tokenizer tokenizer = new Tokenizer(null);
+        TextScanner scanner = new TextScanner();
+
+        for(int round = 0; round < 200; round++) {
+            StringBuilder text = new StringBuilder();
+            for(int i = random.nextInt(60); i > 0; i--) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            // split drops a last word with nothing after it, which the scanner keeps.
+            text.append('.');
+
+            List<? extends Vector<Word>> sentences = tokenizer.split(text.toString());
+            scanner.scan(text);
+
+            assertEquals(text.toString(), sentences.size(), scanner.getSentenceCount());
+            for(int s = 0; s < sentences.size(); s++) {
+                List<Word> words = sentences.get(s);
+                assertEquals(text.toString(), words.size(), scanner.getEndWord(s) - scanner.getFirstWord(s));
+
+                for(int w = 0; w < words.size(); w++) {
+                    int word = scanner.getFirstWord(s) + w;
+                    assertEquals(words.get(w).getText().toLowerCase(), scanner.getWord(word));
+                    assertEquals(words.get(w).getStart(), scanner.getWordStart(word));
+                    assertEquals(words.get(w).getEnd(), scanner.getWordEnd(word));
+                }
+            }
+        }
+    }
+}
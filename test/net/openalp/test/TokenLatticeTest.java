@@ -0,0 +1,176 @@
+package net.openalp.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import net.openalp.core.Grammar;
+import net.openalp.core.Sentence;
+import net.openalp.core.Token;
+import net.openalp.core.TokenLattice;
+import net.openalp.graph.Node;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Checks a lattice counts its readings without listing them, and that walking the grammar
+ * once with the whole lattice finds a valid reading exactly when checking every reading
+ * one at a time would.
+ */
+public class TokenLatticeTest {
+    private static Token[] word(String word, String... types) {
+        Token[] tokens = new Token[types.length];
+        for(int i = 0; i < types.length; i++) {
+            tokens[i] = new Token(word, types[i], 7, 7);
+        }
+        return tokens;
+    }
+
+    private static Sentence sentence(String... types) {
+        Sentence sentence = new Sentence();
+        for(String type: types) {
+            sentence.add(new Token(type.toLowerCase(), type, 7, 7));
+        }
+        return sentence;
+    }
+
+    private static Grammar createGrammar() {
+        Grammar grammar = new Grammar(null);
+        grammar.addPath(sentence("ART", "NOUN", "VERB", "PERIOD"));
+        grammar.addPath(sentence("ART", "ADJ", "NOUN", "VERB", "PERIOD"));
+        return grammar;
+    }
+
+    // Every reading of the lattice, one sentence each.
+    private static List<Sentence> readings(TokenLattice lattice) {
+        List<Sentence> readings = new ArrayList<Sentence>();
+        readings.add(new Sentence());
+
+        for(int i = 0; i < lattice.size(); i++) {
+            List<Sentence> longer = new ArrayList<Sentence>();
+            for(Sentence reading: readings) {
+                for(Token candidate: lattice.getCandidates(i)) {
+                    Sentence next = new Sentence();
+                    next.addAll(reading);
+                    next.add(candidate);
+                    longer.add(next);
+                }
+            }
+            readings = longer;
+        }
+
+        return readings;
+    }
+
+    @Test
+    public void dropsCandidatesThatMatchTheSameNodes() {
+        TokenLattice lattice = new TokenLattice(Arrays.asList(word("the", "ART", "ART"), word("run", "NOUN", "VERB")));
+
+        assertEquals(1, lattice.getCandidates(0).length);
+        assertEquals(2, lattice.getCandidates(1).length);
+        assertTrue(lattice.isAmbiguous());
+        assertEquals(2, lattice.getReadings());
+    }
+
+    @Test
+    public void countsReadingsWithoutOverflowing() {
+        List<Token[]> candidates = new ArrayList<Token[]>();
+        for(int i = 0; i < 70; i++) {
+            candidates.add(word("run", "NOUN", "VERB"));
+        }
+
+        assertEquals(Long.MAX_VALUE, new TokenLattice(candidates).getReadings());
+        assertEquals(1L << 62, new TokenLattice(candidates.subList(0, 62)).getReadings());
+        assertFalse(new TokenLattice(Arrays.<Token[]>asList(word("the", "ART"))).isAmbiguous());
+    }
+
+    @Test
+    public void firstSentenceTakesEveryFirstCandidate() {
+        TokenLattice lattice = new TokenLattice(Arrays.asList(word("the", "ART"), word("run", "VERB", "NOUN")));
+        Sentence first = lattice.getFirstSentence();
+
+        assertEquals(2, first.size());
+        assertEquals("ART", first.get(0).getType());
+        assertEquals("VERB", first.get(1).getType());
+    }
+
+    @Test
+    public void resolvesTheReadingTheGrammarKnows() {
+        Grammar grammar = createGrammar();
+        TokenLattice lattice = new TokenLattice(Arrays.asList(word("the", "ART"), word("run", "VERB", "NOUN"),
+                word("runs", "NOUN", "VERB"), word(".", "PERIOD")));
+
+        assertTrue(grammar.validateSentence(lattice).isValid());
+
+        List<Node> path = grammar.getStart().getMatchedPath(lattice.getFilters());
+        Sentence resolved = lattice.resolve(path);
+        assertEquals(Arrays.asList("ART", "NOUN", "VERB", "PERIOD"), Arrays.asList(resolved.get(0).getType(),
+                resolved.get(1).getType(), resolved.get(2).getType(), resolved.get(3).getType()));
+        assertTrue(grammar.validateSentence(resolved).isValid());
+
+        // Training on a reading the grammar already has adds no nodes.
+        int nodes = grammar.getGraph().size();
+        grammar.addPath(resolved);
+        assertEquals(nodes, grammar.getGraph().size());
+    }
+
+    @Test
+    public void oneWalkAgreesWithEveryReading() {
+        Random random = new Random(5);
+        String[] types = {"ART", "ADJ", "NOUN", "VERB"};
+        int valid = 0;
+
+        for(int round = 0; round < 50; round++) {
+            Grammar grammar = new Grammar(null);
+            for(int i = 0; i < 6; i++) {
+                Sentence sentence = new Sentence();
+                for(int j = 2 + random.nextInt(3); j > 0; j--) {
+                    String type = types[random.nextInt(types.length)];
+                    sentence.add(new Token(type.toLowerCase(), type, 7, 7));
+                }
+                sentence.add(new Token(".", "PERIOD", 7, 7));
+                grammar.addPath(sentence);
+            }
+
+            List<Token[]> candidates = new ArrayList<Token[]>();
+            for(int j = 2 + random.nextInt(3); j > 0; j--) {
+                candidates.add(random.nextBoolean() ? word("w", types[random.nextInt(types.length)])
+                        : word("w", types[random.nextInt(types.length)], types[random.nextInt(types.length)]));
+            }
+            candidates.add(word(".", "PERIOD"));
+            TokenLattice lattice = new TokenLattice(candidates);
+
+            boolean anyValid = false;
+            for(Sentence reading: readings(lattice)) {
+                anyValid |= grammar.validateSentence(reading).isValid();
+            }
+
+            assertEquals(anyValid, grammar.validateSentence(lattice).isValid());
+            if(anyValid) {
+                valid++;
+                Sentence resolved = lattice.resolve(grammar.getStart().getMatchedPath(lattice.getFilters()));
+                assertTrue(grammar.validateSentence(resolved).isValid());
+            }
+        }
+
+        // Both answers should have come up, or the comparison proves little.
+        assertTrue(valid > 0 && valid < 50);
+    }
+}
@@ -0,0 +1,148 @@
+package net.openalp.test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import net.openalp.core.Lexicon;
+import net.openalp.core.PhraseIndex;
+import net.openalp.core.Token;
+import net.openalp.core.TokenizedSentence;
+import net.openalp.core.Tokenizer;
+import net.openalp.core.TokenizingError;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This file is part of OpenALP.
+ * <p/>
+ * OpenALP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p/>
+ * OpenALP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with OpenALP.  If not, see <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ * <p/>
+ *
+ * Checks how the tokenizer reports words, against a small lexicon held in memory that
+ * can be made to fail.
+ */
+public class TokenizerTest {
+    static class StubLexicon implements Lexicon {
+        private final Map<String, List<Token>> words = new HashMap<String, List<Token>>();
+        private final PhraseIndex phrases = new PhraseIndex();
+        boolean bulkFails;
+        boolean wordsFail;
+        int suggestions;
+
+        void define(String word, String type) {
+            if(!words.containsKey(word)) {
+                words.put(word, new LinkedList<Token>());
+                phrases.add(word);
+            }
+            words.get(word).add(new Token(word, type, 7, 7));
+        }
+
+        public LinkedList<Token> get(String word) {
+            if(wordsFail) {
+                return null;
+            }
+            List<Token> tokens = words.get(word);
+            return tokens == null ? new LinkedList<Token>() : new LinkedList<Token>(tokens);
+        }
+
+        public Map<String, List<Token>> getAll(Collection<String> words) {
+            if(bulkFails) {
+                return null;
+            }
+            Map<String, List<Token>> found = new HashMap<String, List<Token>>();
+            for(String word: words) {
+                found.put(word, get(word));
+            }
+            return found;
+        }
+
+        public PhraseIndex getPhrases() {
+            return phrases;
+        }
+
+        public List<String> suggest(String word, int limit) {
+            suggestions++;
+            List<String> found = new LinkedList<String>();
+            for(String known: words.keySet()) {
+                if(known.length() == word.length() && known.charAt(0) == word.charAt(0)) {
+                    found.add(known);
+                }
+            }
+            return found;
+        }
+    }
+
+    static StubLexicon createLexicon() {
+        StubLexicon lexicon = new StubLexicon();
+        lexicon.define("the", "ART");
+        lexicon.define("dog", "NOUN");
+        lexicon.define("runs", "VERB");
+        lexicon.define(".", "TERM");
+        return lexicon;
+    }
+
+    @Test
+    public void findsEveryKnownWord() {
+        List<TokenizedSentence> sentences = new Tokenizer(createLexicon()).tokenize("The dog runs.");
+
+        assertEquals(1, sentences.size());
+        assertTrue(sentences.get(0).getErrors().isEmpty());
+        assertEquals(4, sentences.get(0).getLattice().size());
+        assertEquals("NOUN", sentences.get(0).getLattice().getCandidates(1)[0].getType());
+    }
+
+    @Test
+    public void reportsUnknownWords() {
+        List<TokenizedSentence> sentences = new Tokenizer(createLexicon()).tokenize("The cat runs.");
+
+        assertEquals(1, sentences.get(0).getErrors().size());
+        assertEquals(4, sentences.get(0).getErrors().get(0).getStart());
+        assertEquals(7, sentences.get(0).getErrors().get(0).getEnd());
+    }
+
+    @Test
+    public void onlyLooksForSuggestionsWhenTheyAreAskedFor() {
+        StubLexicon lexicon = createLexicon();
+        List<TokenizedSentence> sentences = new Tokenizer(lexicon).tokenize("The dgo runs.");
+        TokenizingError error = sentences.get(0).getErrors().get(0);
+
+        assertEquals("dgo", error.getWord());
+        assertEquals(0, lexicon.suggestions);
+        assertEquals(Arrays.asList("dog"), error.getSuggestions());
+        assertEquals(Arrays.asList("dog"), error.getSuggestions());
+        assertEquals(1, lexicon.suggestions);
+    }
+
+    @Test
+    public void looksWordsUpOneAtATimeIfTheBulkLookupFails() {
+        StubLexicon lexicon = createLexicon();
+        lexicon.bulkFails = true;
+        List<TokenizedSentence> sentences = new Tokenizer(lexicon).tokenize("The dog runs.");
+
+        assertTrue(sentences.get(0).getErrors().isEmpty());
+        assertEquals("NOUN", sentences.get(0).getLattice().getCandidates(1)[0].getType());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failsRatherThanReportingEveryWordUnknown() {
+        StubLexicon lexicon = createLexicon();
+        lexicon.bulkFails = true;
+        lexicon.wordsFail = true;
+        new Tokenizer(lexicon).tokenize("The dog runs.");
+    }
+}